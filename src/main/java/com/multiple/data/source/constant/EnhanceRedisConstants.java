@@ -19,6 +19,8 @@ public interface EnhanceRedisConstants {
         String DEFAULT_SOURCE_HELPER = "defaultSourceRedisHelper";
 
         String DEFAULT_SOURCE_TEMPLATE = "defaultSourceRedisTemplate";
+
+        String BOOTSTRAP = "redisDataSourceBootstrap";
     }
 
     /**
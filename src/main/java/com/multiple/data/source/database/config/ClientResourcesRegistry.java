@@ -0,0 +1,119 @@
+package com.multiple.data.source.database.config;
+
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lettuce ClientResources注册中心
+ * ClientResources包含netty事件循环线程池、计算线程池以及定时器，创建代价很高，lettuce官方建议整个应用共享一份。
+ * 默认分组复用容器中的ClientResources（由spring boot的LettuceConnectionConfiguration注入，生命周期由容器管理），
+ * 默认数据源、spring.redis.datasource下的所有数据源以及动态创建的每个db都共享它；
+ * 需要隔离的数据源可以通过 <code>client-resources-group</code> 指定单独的分组，分组按需懒加载创建，容器关闭时统一释放
+ */
+public class ClientResourcesRegistry implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientResourcesRegistry.class);
+
+    /**
+     * 默认分组名称
+     */
+    public static final String DEFAULT_GROUP = "default";
+
+    /**
+     * 关闭ClientResources的最大等待时长，单位：秒
+     */
+    private static final long SHUTDOWN_TIMEOUT = 5L;
+
+    /**
+     * 容器中的ClientResources，作为默认分组使用，由容器负责关闭
+     */
+    private final ClientResources containerClientResources;
+
+    /**
+     * 隔离分组的io线程数，小于等于0则使用lettuce默认值
+     */
+    private final int ioThreadPoolSize;
+
+    /**
+     * 隔离分组的计算线程数，小于等于0则使用lettuce默认值
+     */
+    private final int computationThreadPoolSize;
+
+    /**
+     * 已创建的ClientResources（key: 分组名称）
+     */
+    private final Map<String, ClientResources> clientResources = new ConcurrentHashMap<>();
+
+    public ClientResourcesRegistry(ClientResources containerClientResources, int ioThreadPoolSize,
+                                   int computationThreadPoolSize) {
+        this.containerClientResources = containerClientResources;
+        this.ioThreadPoolSize = ioThreadPoolSize;
+        this.computationThreadPoolSize = computationThreadPoolSize;
+    }
+
+    /**
+     * 获取默认分组的ClientResources
+     */
+    public ClientResources getClientResources() {
+        return getClientResources(DEFAULT_GROUP);
+    }
+
+    /**
+     * 获取指定分组的ClientResources，不存在则创建
+     *
+     * @param group 分组名称，为空则使用默认分组
+     */
+    public ClientResources getClientResources(String group) {
+        String groupName = StringUtils.hasText(group) ? group : DEFAULT_GROUP;
+        return clientResources.computeIfAbsent(groupName, this::createClientResources);
+    }
+
+    /**
+     * 当前已创建的分组数量
+     */
+    public int size() {
+        return clientResources.size();
+    }
+
+    private ClientResources createClientResources(String group) {
+        if (DEFAULT_GROUP.equals(group) && containerClientResources != null) {
+            return containerClientResources;
+        }
+        DefaultClientResources.Builder builder = DefaultClientResources.builder();
+        if (ioThreadPoolSize > 0) {
+            builder.ioThreadPoolSize(ioThreadPoolSize);
+        }
+        if (computationThreadPoolSize > 0) {
+            builder.computationThreadPoolSize(computationThreadPoolSize);
+        }
+        LOGGER.info("create lettuce ClientResources for group {}", group);
+        return builder.build();
+    }
+
+    /**
+     * 释放由注册中心创建的ClientResources，容器中的ClientResources交给容器自己释放
+     */
+    @Override
+    public void destroy() {
+        clientResources.forEach((group, resources) -> {
+            if (resources == containerClientResources) {
+                return;
+            }
+            try {
+                resources.shutdown().get(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+                LOGGER.info("lettuce ClientResources of group {} shutdown.", group);
+            } catch (Exception e) {
+                LOGGER.warn("shutdown lettuce ClientResources of group {} failed.", group, e);
+            }
+        });
+        clientResources.clear();
+    }
+}
@@ -0,0 +1,152 @@
+package com.multiple.data.source.database.config;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 切换db的Redis连接工厂，单连接多db模式下使用
+ * 同一个数据源的所有db共享同一个连接工厂（也就共享同一个连接池），该工厂只记录目标db，获取连接时如果目标db与连接当前所在的db不同才发送SELECT。
+ * 每个本地连接当前所在的db记录在 {@link #SELECTED_DATABASES} 中，SELECT不经过 {@link RedisConnection#select(int)} 而是直接发送命令，
+ * 客户端不知道连接切换了db，归还连接池时（lettuce在LettuceConnection#close中）、下次借出时（jedis在JedisFactory#activateObject中）
+ * 不会再切换回默认db，连接保持在最后一次选择的db，下次借出给同一个db时不需要SELECT。
+ * lettuce按命令类型记录SELECT，断线重连后会恢复到该db
+ */
+public class DatabaseSelectingConnectionFactory implements RedisConnectionFactory {
+
+    /**
+     * 无法确定连接所在的db
+     */
+    public static final int UNKNOWN_DATABASE = -1;
+
+    /**
+     * 本地连接当前所在的db，key: 本地连接（lettuce为独占连接的命令接口，jedis为Jedis），没有记录的连接处于默认db。
+     * 本地连接同一时间只借出给一个线程，连接池销毁连接后自动移除
+     */
+    private static final Map<Object, Integer> SELECTED_DATABASES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * 该数据源共享的连接工厂
+     */
+    private final RedisConnectionFactory delegate;
+
+    /**
+     * 目标db
+     */
+    private final int database;
+
+    /**
+     * 共享连接工厂的默认db，即新建连接所在的db
+     */
+    private final int defaultDatabase;
+
+    public DatabaseSelectingConnectionFactory(RedisConnectionFactory delegate, int database, int defaultDatabase) {
+        this.delegate = delegate;
+        this.database = database;
+        this.defaultDatabase = defaultDatabase;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        RedisConnection connection = delegate.getConnection();
+        try {
+            select(connection, database, defaultDatabase);
+        } catch (RuntimeException e) {
+            // 切换失败时连接要归还，否则连接池会泄漏
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * 连接当前所在的db与目标db不同时发送SELECT，并记录连接所在的db
+     *
+     * @param connection      共享连接工厂的连接
+     * @param database        目标db
+     * @param defaultDatabase 共享连接工厂的默认db，即新建连接所在的db
+     */
+    public static void select(RedisConnection connection, int database, int defaultDatabase) {
+        Object nativeConnection = connection.getNativeConnection();
+        if (getSelectedDatabase(nativeConnection, defaultDatabase) == database) {
+            return;
+        }
+        // SELECT失败（例如超时）时无法确定连接所在的db，下次借出时总是重新SELECT
+        SELECTED_DATABASES.put(nativeConnection, UNKNOWN_DATABASE);
+        connection.execute("SELECT", String.valueOf(database).getBytes(StandardCharsets.UTF_8));
+        setSelectedDatabase(nativeConnection, database, defaultDatabase);
+    }
+
+    /**
+     * 获取连接当前所在的db
+     *
+     * @param connection      共享连接工厂的连接
+     * @param defaultDatabase 共享连接工厂的默认db
+     * @return 无法确定时为 {@link #UNKNOWN_DATABASE}
+     */
+    public static int getSelectedDatabase(RedisConnection connection, int defaultDatabase) {
+        return getSelectedDatabase(connection.getNativeConnection(), defaultDatabase);
+    }
+
+    /**
+     * 记录连接当前所在的db，通过其他方式（例如pipeline中的SELECT）切换db后调用
+     *
+     * @param database 连接所在的db，无法确定时为 {@link #UNKNOWN_DATABASE}
+     */
+    public static void setSelectedDatabase(RedisConnection connection, int database, int defaultDatabase) {
+        setSelectedDatabase(connection.getNativeConnection(), database, defaultDatabase);
+    }
+
+    private static int getSelectedDatabase(Object nativeConnection, int defaultDatabase) {
+        Integer selected = SELECTED_DATABASES.get(nativeConnection);
+        return selected == null ? defaultDatabase : selected;
+    }
+
+    private static void setSelectedDatabase(Object nativeConnection, int database, int defaultDatabase) {
+        // 处于默认db的连接不需要记录
+        if (database == defaultDatabase) {
+            SELECTED_DATABASES.remove(nativeConnection);
+        } else {
+            SELECTED_DATABASES.put(nativeConnection, database);
+        }
+    }
+
+    /**
+     * redis官方要求集群模式下不能切换db只有db0
+     */
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new InvalidDataAccessApiUsageException("cluster mode can't change db.");
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return delegate.getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        return delegate.getSentinelConnection();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return delegate.translateExceptionIfPossible(ex);
+    }
+
+    public RedisConnectionFactory getDelegate() {
+        return delegate;
+    }
+
+    public int getDatabase() {
+        return database;
+    }
+}
@@ -1,18 +1,30 @@
 package com.multiple.data.source.database.config;
 
+import com.multiple.data.source.constant.EnhanceRedisConstants;
+import com.multiple.data.source.database.convert.RedisValueCodec;
+import com.multiple.data.source.database.convert.RedisValueCodecs;
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import com.multiple.data.source.database.helper.RedisScriptRegistry;
+import com.multiple.data.source.database.options.ManagedRedisTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.data.redis.JedisClientConfigurationBuilderCustomizer;
 import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.util.Assert;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 动态 RedisTemplate 工厂类，用于创建和管理RedisTemplate
@@ -48,9 +60,71 @@ public class DynamicRedisTemplateFactory<K, V> {
      * lettuce配置定制
      */
     private final List<LettuceClientConfigurationBuilderCustomizer> lettuceBuilderCustomizers;
+    /**
+     * lettuce ClientResources注册中心，所有数据源、所有db共享
+     */
+    private ClientResourcesRegistry clientResourcesRegistry;
+    /**
+     * 该数据源使用的ClientResources分组，为空则使用默认分组
+     */
+    private String clientResourcesGroup;
+    /**
+     * 是否开启单连接多db模式，开启后该数据源所有db共享同一个连接工厂和连接池，通过SELECT切换db
+     */
+    private boolean singleConnection;
+    /**
+     * 单连接多db模式下该数据源所有db共享的连接工厂
+     */
+    private volatile RedisConnectionFactory sharedConnectionFactory;
+    /**
+     * 使用共享连接工厂的RedisTemplate，连接可以切换db，跨db批量操作时使用
+     */
+    private volatile RedisTemplate<K, V> sharedRedisTemplate;
+    /**
+     * 停机协调器，跟踪创建的连接工厂以及正在执行的命令，容器关闭时统一销毁
+     */
+    private RedisShutdownCoordinator shutdownCoordinator;
+    /**
+     * 每个db单独配置的连接池，key: db号，没有配置的db使用数据源的连接池配置
+     */
+    private Map<Integer, RedisProperties.Pool> databasePools = Collections.emptyMap();
+    /**
+     * 连接预算，创建连接工厂前按连接池大小预留连接数
+     */
+    private RedisConnectionGovernor connectionGovernor;
+    /**
+     * 数据源名称，用于连接预算按数据源分配
+     */
+    private String dataSourceName = EnhanceRedisConstants.DefaultRedisHelperName.DEFAULT;
+    /**
+     * 该数据源的Lua脚本加载状态，所有db共享redis的脚本缓存，第一次执行脚本时加载一次
+     */
+    private final RedisScriptRegistry.Loader scriptLoader = new RedisScriptRegistry.Loader();
 
-    private static final String REDIS_CLIENT_LETTUCE = "lettuce";
-    private static final String REDIS_CLIENT_JEDIS = "jedis";
+    /**
+     * 该数据源使用的Redis客户端
+     */
+    private volatile RedisClientType clientType;
+
+    /**
+     * 该数据源对象值的编解码
+     */
+    private RedisValueCodec valueCodec = RedisValueCodecs.json();
+
+    /**
+     * 每个db单独配置的编解码，key: db号，没有配置的db使用数据源的编解码
+     */
+    private Map<Integer, RedisValueCodec> databaseValueCodecs = Collections.emptyMap();
+
+    /**
+     * 该数据源的值压缩器，为空表示不压缩
+     */
+    private RedisValueCompressor compressor;
+
+    /**
+     * 每个db单独配置的压缩器，key: db号，value为空表示该db不压缩，没有配置的db使用数据源的压缩器
+     */
+    private Map<Integer, RedisValueCompressor> databaseCompressors = Collections.emptyMap();
 
     /**
      * 这些参数由springboot自动配置帮我们自动配置并注入到容器
@@ -74,35 +148,256 @@ public class DynamicRedisTemplateFactory<K, V> {
      * @param database redis db
      */
     public RedisTemplate<K, V> createRedisTemplate(int database) {
-        RedisConnectionFactory redisConnectionFactory = null;
-        // 根据Redis客户端类型创建Redis连接工厂（用于创建RedisTemplate）
-        switch (getRedisClientType()) {
-            case REDIS_CLIENT_LETTUCE:
-                // 使用指定的db创建lettuce redis连接工厂(创建方式参照源码：LettuceConnectionConfiguration)
-                LettuceConnectionConfigure lettuceConnectionConfigure = new LettuceConnectionConfigure(
-                        properties, sentinelConfiguration, clusterConfiguration, lettuceBuilderCustomizers, database);
-                redisConnectionFactory = lettuceConnectionConfigure.redisConnectionFactory();
-                break;
-            case REDIS_CLIENT_JEDIS:
-                // 使用指定的db创建jedis redis连接工厂（创建方式参照源码：JedisConnectionConfiguration）
-                JedisConnectionConfigure jedisConnectionConfigure = new JedisConnectionConfigure(properties,
-                        sentinelConfiguration, clusterConfiguration, jedisBuilderCustomizers, database);
-                redisConnectionFactory = jedisConnectionConfigure.redisConnectionFactory();
-                break;
-            default:
-                LOGGER.error("unknown redis client type.");
-        }
-        Assert.notNull(redisConnectionFactory, "redisConnectionFactory is null.");
+        return createRedisTemplate(database, reserveConnections(database));
+    }
+
+    /**
+     * 使用已预留的连接预算为指定的db创建RedisTemplate，预留结果交给该方法后由该方法负责归还
+     *
+     * @param database   redis db
+     * @param allocation {@link #reserveConnections(int)} 的预留结果
+     */
+    public RedisTemplate<K, V> createRedisTemplate(int database, RedisConnectionGovernor.Allocation allocation) {
+        RedisConnectionFactory redisConnectionFactory;
+        if (isSingleConnection()) {
+            // 单连接多db模式：所有db共享该数据源的连接工厂，获取连接时再切换到指定的db，预留用于第一次创建共享连接工厂
+            redisConnectionFactory = new DatabaseSelectingConnectionFactory(getSharedConnectionFactory(allocation), database,
+                    properties.getDatabase());
+        } else {
+            redisConnectionFactory = createRedisConnectionFactory(database, allocation);
+        }
         // 通过Redis连接工厂创建RedisTemplate
-        return createRedisTemplate(redisConnectionFactory);
+        return createRedisTemplate(redisConnectionFactory, database);
+    }
+
+    /**
+     * 为即将创建的db连接工厂预留连接预算，预算不足时等待。应在获取RedisTemplate缓存的锁之前调用，
+     * 等待时不阻塞其他线程创建、获取RedisTemplate
+     *
+     * @param database redis db
+     * @return 没有连接预算、单连接多db模式下共享连接工厂已创建时返回null
+     */
+    public RedisConnectionGovernor.Allocation reserveConnections(int database) {
+        if (isSingleConnection()) {
+            // 单连接多db模式只会创建共享连接工厂
+            return sharedConnectionFactory == null ? acquireConnections(properties.getDatabase()) : null;
+        }
+        return acquireConnections(database);
+    }
+
+    /**
+     * 归还没有用于创建连接工厂的预留（例如并发创建同一个db时另一个线程已经创建完成）
+     */
+    public void releaseConnections(RedisConnectionGovernor.Allocation allocation) {
+        if (allocation != null && connectionGovernor != null) {
+            connectionGovernor.release(allocation);
+        }
+    }
+
+    /**
+     * 在已有的连接工厂上为指定的db创建RedisTemplate，使用该db配置的编解码和压缩器，
+     * 用于容器创建的默认连接工厂（配置文件中指定的db）。该连接工厂不是这里创建的，不登记到停机协调器销毁，也不占用连接预算
+     *
+     * @param connectionFactory 已有的连接工厂，连接到指定的db
+     * @param database          redis db
+     */
+    public RedisTemplate<K, V> createRedisTemplate(RedisConnectionFactory connectionFactory, int database) {
+        ManagedRedisTemplate<K, V> redisTemplate = createRedisTemplate(connectionFactory);
+        redisTemplate.setValueCodec(getValueCodec(database));
+        redisTemplate.setCompressor(getCompressor(database));
+        return redisTemplate;
+    }
+
+    /**
+     * 销毁通过 {@link #createRedisTemplate(int)} 创建但不再使用的RedisTemplate的连接工厂，并归还其连接预算。
+     * 单连接多db模式下的连接工厂是共享的，不会被销毁
+     */
+    public void destroyRedisTemplate(RedisTemplate<?, ?> redisTemplate) {
+        RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+        if (connectionFactory == null || connectionFactory instanceof DatabaseSelectingConnectionFactory) {
+            return;
+        }
+        if (shutdownCoordinator != null) {
+            shutdownCoordinator.destroy(connectionFactory);
+            return;
+        }
+        if (connectionFactory instanceof DisposableBean) {
+            try {
+                ((DisposableBean) connectionFactory).destroy();
+            } catch (Exception e) {
+                LOGGER.warn("destroy redis connection factory of datasource {} failed.", dataSourceName, e);
+            }
+        }
+        if (connectionGovernor != null) {
+            connectionGovernor.release(connectionFactory);
+        }
+    }
+
+    /**
+     * 获取该数据源所有db共享的连接工厂（连接到配置文件中指定的db），第一次获取时创建。
+     * 没有开启单连接多db模式时只有跨db批量操作使用，是该数据源额外的一个连接池，同样占用连接预算
+     */
+    public RedisConnectionFactory getSharedConnectionFactory() {
+        RedisConnectionFactory connectionFactory = sharedConnectionFactory;
+        if (connectionFactory != null) {
+            return connectionFactory;
+        }
+        // 预算不足时的等待不占用锁，不阻塞该数据源其他连接工厂的创建
+        return getSharedConnectionFactory(acquireConnections(properties.getDatabase()));
+    }
+
+    /**
+     * 使用已预留的连接预算获取共享连接工厂，其他线程已经创建时归还预留
+     */
+    private RedisConnectionFactory getSharedConnectionFactory(RedisConnectionGovernor.Allocation allocation) {
+        RedisConnectionFactory connectionFactory = sharedConnectionFactory;
+        if (connectionFactory == null) {
+            synchronized (this) {
+                connectionFactory = sharedConnectionFactory;
+                if (connectionFactory == null) {
+                    if (!isSingleConnection()) {
+                        // 只用于跨db批量操作，与各db的连接工厂相互独立
+                        LOGGER.info("create an extra connection factory of datasource {} for cross db batch, "
+                                + "enable single connection mode to share one pool.", dataSourceName);
+                    }
+                    connectionFactory = createRedisConnectionFactory(properties.getDatabase(), allocation);
+                    allocation = null;
+                    if (connectionFactory instanceof LettuceConnectionFactory) {
+                        // lettuce共享的本地连接不允许SELECT，切换db必须使用连接池中独占的连接
+                        ((LettuceConnectionFactory) connectionFactory).setShareNativeConnection(false);
+                        if (properties.getLettuce().getPool() == null) {
+                            LOGGER.warn("single connection mode without lettuce pool, every operation opens a new connection.");
+                        }
+                    }
+                    sharedConnectionFactory = connectionFactory;
+                }
+            }
+        }
+        releaseConnections(allocation);
+        return connectionFactory;
+    }
+
+    /**
+     * 获取使用该数据源共享连接工厂的RedisTemplate，其连接不与其他线程共享，可以通过SELECT切换db，第一次获取时创建
+     */
+    public RedisTemplate<K, V> getSharedRedisTemplate() {
+        RedisTemplate<K, V> redisTemplate = sharedRedisTemplate;
+        if (redisTemplate == null) {
+            // 在锁外获取共享连接工厂，预算不足时的等待不占用锁
+            RedisConnectionFactory connectionFactory = getSharedConnectionFactory();
+            synchronized (this) {
+                redisTemplate = sharedRedisTemplate;
+                if (redisTemplate == null) {
+                    redisTemplate = createRedisTemplate(connectionFactory);
+                    sharedRedisTemplate = redisTemplate;
+                }
+            }
+        }
+        return redisTemplate;
+    }
+
+    /**
+     * 配置文件中指定的db，即共享连接工厂的连接借出时所在的db
+     */
+    public int getDefaultDatabase() {
+        return properties.getDatabase();
+    }
+
+    /**
+     * 是否为集群模式，集群模式下只有db0
+     */
+    public boolean isCluster() {
+        return clusterConfiguration != null || properties.getCluster() != null;
+    }
+
+    /**
+     * 为指定的db创建Redis连接工厂
+     *
+     * @param database   redis db
+     * @param allocation 按连接池大小预留的连接数，为空表示不占用预算；创建失败时归还，成功时与连接工厂关联，销毁时归还
+     */
+    private RedisConnectionFactory createRedisConnectionFactory(int database, RedisConnectionGovernor.Allocation allocation) {
+        RedisConnectionFactory redisConnectionFactory = null;
+        try {
+            // 根据Redis客户端类型创建Redis连接工厂（用于创建RedisTemplate）
+            switch (getRedisClientType()) {
+                case LETTUCE:
+                    // 使用指定的db创建lettuce redis连接工厂(创建方式参照源码：LettuceConnectionConfiguration)
+                    LettuceConnectionConfigure lettuceConnectionConfigure = new LettuceConnectionConfigure(
+                            properties, sentinelConfiguration, clusterConfiguration, lettuceBuilderCustomizers, database,
+                            getClientResourcesRegistry().getClientResources(clientResourcesGroup), databasePools.get(database));
+                    redisConnectionFactory = lettuceConnectionConfigure.redisConnectionFactory();
+                    break;
+                case JEDIS:
+                    // 使用指定的db创建jedis redis连接工厂（创建方式参照源码：JedisConnectionConfiguration）
+                    JedisConnectionConfigure jedisConnectionConfigure = new JedisConnectionConfigure(properties,
+                            sentinelConfiguration, clusterConfiguration, jedisBuilderCustomizers, database,
+                            databasePools.get(database));
+                    redisConnectionFactory = jedisConnectionConfigure.redisConnectionFactory();
+                    break;
+                default:
+                    LOGGER.error("unknown redis client type.");
+            }
+            Assert.notNull(redisConnectionFactory, "redisConnectionFactory is null.");
+        } catch (RuntimeException e) {
+            if (allocation != null) {
+                connectionGovernor.release(allocation);
+            }
+            throw e;
+        }
+        if (allocation != null) {
+            connectionGovernor.track(redisConnectionFactory, allocation);
+        }
+        // 手动创建的连接工厂不受容器管理，交给停机协调器在容器关闭时销毁
+        if (shutdownCoordinator != null) {
+            shutdownCoordinator.register(redisConnectionFactory);
+        }
+        return redisConnectionFactory;
+    }
+
+    /**
+     * 按连接池大小预留连接数，预算不足时等待或失败
+     */
+    private RedisConnectionGovernor.Allocation acquireConnections(int database) {
+        return connectionGovernor == null ? null
+                : connectionGovernor.acquire(dataSourceName, database, getConnectionCount(database));
+    }
+
+    /**
+     * 指定db的连接工厂最多使用的连接数，即连接池的maxActive，lettuce还有一个共享的本地连接
+     *
+     * @param database redis db
+     */
+    private int getConnectionCount(int database) {
+        boolean lettuce = getRedisClientType() == RedisClientType.LETTUCE;
+        RedisProperties.Pool pool = databasePools.get(database);
+        if (pool == null) {
+            pool = lettuce ? properties.getLettuce().getPool() : properties.getJedis().getPool();
+        }
+        // 没有连接池或连接池不限制大小时无法预留，只按1个连接计算
+        if (pool == null || pool.getMaxActive() <= 0) {
+            return 1;
+        }
+        return lettuce ? pool.getMaxActive() + 1 : pool.getMaxActive();
+    }
+
+    /**
+     * 是否使用单连接多db模式，集群模式下只有db0，不需要切换
+     */
+    private boolean isSingleConnection() {
+        return singleConnection && !isCluster();
     }
 
     /**
      * 通过Redis连接工厂来创建一个redisTemplate用于操作Redis db
      */
-    private RedisTemplate<K, V> createRedisTemplate(RedisConnectionFactory factory) {
+    private ManagedRedisTemplate<K, V> createRedisTemplate(RedisConnectionFactory factory) {
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
-        RedisTemplate<K, V> redisTemplate = new RedisTemplate<>();
+        ManagedRedisTemplate<K, V> redisTemplate = new ManagedRedisTemplate<>();
+        redisTemplate.setShutdownCoordinator(shutdownCoordinator);
+        redisTemplate.setScriptLoader(scriptLoader);
+        redisTemplate.setValueCodec(valueCodec);
+        redisTemplate.setCompressor(compressor);
         redisTemplate.setKeySerializer(stringRedisSerializer);
         redisTemplate.setStringSerializer(stringRedisSerializer);
         redisTemplate.setDefaultSerializer(stringRedisSerializer);
@@ -113,29 +408,152 @@ public class DynamicRedisTemplateFactory<K, V> {
         redisTemplate.setConnectionFactory(factory);
         // 调用afterPropertiesSet方法，在属性设置完成后做一些检查和额外工作
         redisTemplate.afterPropertiesSet();
+        redisTemplate.setByteRedisTemplate(createByteRedisTemplate(factory));
         return redisTemplate;
     }
 
     /**
-     * 获取Redis客户端的类型，提供jedis和lettuce两种
+     * 在同一个连接工厂上创建value为byte[]的redisTemplate，用于二进制编解码和压缩的值读写，
+     * 随redisTemplate一起缓存和淘汰
      */
-    private static String getRedisClientType() {
-        try {
-            // 如果能加载lettuce，则优先使用lettuce
-            Class.forName("io.lettuce.core.RedisClient");
-            return REDIS_CLIENT_LETTUCE;
-        } catch (ClassNotFoundException e) {
-            LOGGER.debug("Not Lettuce redis client");
+    private ManagedRedisTemplate<String, byte[]> createByteRedisTemplate(RedisConnectionFactory factory) {
+        StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
+        ManagedRedisTemplate<String, byte[]> redisTemplate = new ManagedRedisTemplate<>();
+        redisTemplate.setShutdownCoordinator(shutdownCoordinator);
+        redisTemplate.setKeySerializer(stringRedisSerializer);
+        redisTemplate.setHashKeySerializer(stringRedisSerializer);
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.setConnectionFactory(factory);
+        redisTemplate.afterPropertiesSet();
+        return redisTemplate;
+    }
+
+    /**
+     * 获取ClientResources注册中心，没有从容器中设置时（手动创建工厂的场景）退化为该工厂内所有db共享
+     */
+    private synchronized ClientResourcesRegistry getClientResourcesRegistry() {
+        if (clientResourcesRegistry == null) {
+            LOGGER.warn("no ClientResourcesRegistry set, ClientResources will only be shared within this factory.");
+            clientResourcesRegistry = new ClientResourcesRegistry(null, 0, 0);
         }
+        return clientResourcesRegistry;
+    }
 
-        try {
-            // 如果能加载Jedis，则使用Jedis
-            Class.forName("redis.clients.jedis.Jedis");
-            return REDIS_CLIENT_JEDIS;
-        } catch (ClassNotFoundException e) {
-            LOGGER.debug("Not Jedis redis client");
+    public void setClientResourcesRegistry(ClientResourcesRegistry clientResourcesRegistry) {
+        this.clientResourcesRegistry = clientResourcesRegistry;
+    }
+
+    public void setClientResourcesGroup(String clientResourcesGroup) {
+        this.clientResourcesGroup = clientResourcesGroup;
+    }
+
+    public void setSingleConnection(boolean singleConnection) {
+        this.singleConnection = singleConnection;
+    }
+
+    public void setShutdownCoordinator(RedisShutdownCoordinator shutdownCoordinator) {
+        this.shutdownCoordinator = shutdownCoordinator;
+    }
+
+    public void setConnectionGovernor(RedisConnectionGovernor connectionGovernor) {
+        this.connectionGovernor = connectionGovernor;
+    }
+
+    public void setDataSourceName(String dataSourceName) {
+        this.dataSourceName = dataSourceName;
+    }
+
+    /**
+     * 设置每个db单独的连接池配置，单连接多db模式下所有db共享一个连接池，使用默认db的配置
+     *
+     * @param databasePools key: db号，value: 连接池配置
+     */
+    public void setDatabasePools(Map<Integer, RedisProperties.Pool> databasePools) {
+        this.databasePools = databasePools == null ? Collections.emptyMap() : databasePools;
+    }
+
+    /**
+     * 指定该数据源对象值的编解码
+     *
+     * @param valueCodec 编解码名称，为空则使用json
+     */
+    public void setValueCodec(String valueCodec) {
+        this.valueCodec = RedisValueCodecs.get(valueCodec);
+    }
+
+    /**
+     * 设置每个db单独的编解码
+     *
+     * @param databaseValueCodecs key: db号，value: 编解码名称
+     */
+    public void setDatabaseValueCodecs(Map<Integer, String> databaseValueCodecs) {
+        Map<Integer, RedisValueCodec> codecs = new LinkedHashMap<>();
+        if (databaseValueCodecs != null) {
+            databaseValueCodecs.forEach((database, name) -> codecs.put(database, RedisValueCodecs.get(name)));
+        }
+        this.databaseValueCodecs = codecs;
+    }
+
+    /**
+     * 获取指定db的编解码，db单独配置的优先
+     *
+     * @param database redis db
+     */
+    public RedisValueCodec getValueCodec(int database) {
+        return databaseValueCodecs.getOrDefault(database, valueCodec);
+    }
+
+    /**
+     * 指定该数据源的值压缩器
+     *
+     * @param compressor 压缩器，为空表示不压缩
+     */
+    public void setCompressor(RedisValueCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * 设置每个db单独的压缩器
+     *
+     * @param databaseCompressors key: db号，value: 压缩器，为空表示该db不压缩
+     */
+    public void setDatabaseCompressors(Map<Integer, RedisValueCompressor> databaseCompressors) {
+        this.databaseCompressors = databaseCompressors == null ? Collections.emptyMap() : databaseCompressors;
+    }
+
+    /**
+     * 获取指定db的压缩器，db单独配置的优先
+     *
+     * @param database redis db
+     * @return 为空表示不压缩
+     */
+    public RedisValueCompressor getCompressor(int database) {
+        return databaseCompressors.containsKey(database) ? databaseCompressors.get(database) : compressor;
+    }
+
+    /**
+     * 指定该数据源使用的客户端，为空则使用类路径下可用的客户端（lettuce优先）
+     *
+     * @param clientType 客户端类型
+     */
+    public void setClientType(RedisClientType clientType) {
+        if (clientType != null && !clientType.isPresent()) {
+            throw new IllegalStateException("redis client " + clientType + " not found in classpath.");
+        }
+        this.clientType = clientType;
+    }
+
+    /**
+     * 获取Redis客户端的类型，提供jedis和lettuce两种，没有指定时只检测一次
+     */
+    public RedisClientType getRedisClientType() {
+        RedisClientType type = clientType;
+        if (type == null) {
+            type = RedisClientType.detect();
+            clientType = type;
         }
-        throw new RuntimeException("redis client not found.");
+        return type;
     }
 
 }
\ No newline at end of file
@@ -25,11 +25,18 @@ public class JedisConnectionConfigure extends RedisConfiguration {
 
 	private final List<JedisClientConfigurationBuilderCustomizer> builderCustomizers;
 
+	/**
+	 * 该db单独配置的连接池，为空则使用数据源的 jedis.pool 配置
+	 */
+	private final RedisProperties.Pool pool;
+
 	JedisConnectionConfigure(RedisProperties properties, RedisSentinelConfiguration sentinelConfiguration,
 			RedisClusterConfiguration clusterConfiguration,
-			List<JedisClientConfigurationBuilderCustomizer> builderCustomizers, int database) {
+			List<JedisClientConfigurationBuilderCustomizer> builderCustomizers, int database,
+			RedisProperties.Pool pool) {
 		super(properties, sentinelConfiguration, clusterConfiguration, database);
 		this.builderCustomizers = Optional.ofNullable(builderCustomizers).orElse(new ArrayList<>());
+		this.pool = pool;
 	}
 
 	/**
@@ -64,7 +71,7 @@ public class JedisConnectionConfigure extends RedisConfiguration {
 	private JedisClientConfiguration getJedisClientConfiguration(
 			List<JedisClientConfigurationBuilderCustomizer> builderCustomizers) {
 		JedisClientConfigurationBuilder builder = applyProperties(JedisClientConfiguration.builder());
-		RedisProperties.Pool pool = getProperties().getJedis().getPool();
+		RedisProperties.Pool pool = this.pool != null ? this.pool : getProperties().getJedis().getPool();
 		if (pool != null) {
 			applyPooling(pool, builder);
 		}
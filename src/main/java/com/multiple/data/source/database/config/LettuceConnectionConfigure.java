@@ -17,7 +17,6 @@ import org.springframework.data.redis.connection.lettuce.LettucePoolingClientCon
 import org.springframework.util.StringUtils;
 
 import io.lettuce.core.resource.ClientResources;
-import io.lettuce.core.resource.DefaultClientResources;
 
 /**
  * Redis connection configuration using Lettuce.
@@ -36,17 +35,27 @@ public class LettuceConnectionConfigure extends RedisConfiguration {
 	 */
 	private final List<LettuceClientConfigurationBuilderCustomizer> builderCustomizers;
 
+	/**
+	 * 共享的ClientResources，由ClientResourcesRegistry统一创建和释放
+	 */
 	private final ClientResources clientResources;
 
+	/**
+	 * 该db单独配置的连接池，为空则使用数据源的 lettuce.pool 配置
+	 */
+	private final Pool pool;
+
 	LettuceConnectionConfigure(RedisProperties properties, RedisSentinelConfiguration sentinelConfigurationProvider,
 			RedisClusterConfiguration clusterConfigurationProvider,
-			List<LettuceClientConfigurationBuilderCustomizer> builderCustomizers, int database) {
+			List<LettuceClientConfigurationBuilderCustomizer> builderCustomizers, int database,
+			ClientResources clientResources, Pool pool) {
 		super(properties, sentinelConfigurationProvider, clusterConfigurationProvider, database);
 		this.properties = properties;
 		this.builderCustomizers = Optional.ofNullable(builderCustomizers).orElse(new ArrayList<>());
-		// 每次new LettuceConnectionConfiguration 都新建一个clientResources，也可以使用容器中默认注入的
+		// 不再每次都新建clientResources（每个都会启动一组netty事件循环线程池且从不关闭），而是使用注册中心中共享的
 		// 参考 LettuceConnectionConfiguration
-		clientResources = DefaultClientResources.create();
+		this.clientResources = clientResources;
+		this.pool = pool;
 	}
 
 	/**
@@ -55,7 +64,7 @@ public class LettuceConnectionConfigure extends RedisConfiguration {
 	LettuceConnectionFactory redisConnectionFactory() {
 		// 获取lettuce连接工厂配置信息
 		LettuceClientConfiguration clientConfig = getLettuceClientConfiguration(clientResources,
-				properties.getLettuce().getPool());
+				pool != null ? pool : properties.getLettuce().getPool());
 		// 创建lettuce连接工厂
 		return createLettuceConnectionFactory(clientConfig);
 	}
@@ -1,10 +1,20 @@
 package com.multiple.data.source.database.config;
 
+import com.multiple.data.source.constant.EnhanceRedisConstants;
+import com.multiple.data.source.database.convert.RedisValueCodec;
+import com.multiple.data.source.database.convert.RedisValueCompressor;
 import com.multiple.data.source.database.helper.ApplicationContextHelper;
 import com.multiple.data.source.database.helper.DynamicRedisHelper;
 import com.multiple.data.source.database.helper.RedisHelper;
+import com.multiple.data.source.database.helper.RedisScatterGather;
 import com.multiple.data.source.database.options.DynamicRedisTemplate;
+import com.multiple.data.source.database.registrar.RedisCompressionProperties;
+import com.multiple.data.source.database.registrar.RedisDatabaseProperties;
 import com.multiple.data.source.database.registrar.StoneRedisProperties;
+import com.multiple.data.source.database.util.EnvironmentUtil;
+import io.lettuce.core.resource.ClientResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.*;
 import org.springframework.boot.autoconfigure.data.redis.JedisClientConfigurationBuilderCustomizer;
@@ -14,17 +24,20 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.StringUtils;
 
 import java.lang.annotation.*;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * stone-redis自动配置，必须要容器中有RedisConnectionFactory才启动该配置类
@@ -33,11 +46,78 @@ import java.util.Map;
 @ConditionalOnClass(name = {"org.springframework.data.redis.connection.RedisConnectionFactory"})
 public class RedisAutoConfiguration {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisAutoConfiguration.class);
+
     @Bean
     public ApplicationContextHelper applicationContextHelper() {
         return new ApplicationContextHelper();
     }
 
+    /**
+     * lettuce ClientResources注册中心，默认分组复用容器中的ClientResources，让所有数据源以及动态创建的每个db共享同一组线程池
+     */
+    @Bean
+    @ConditionalOnMissingBean(ClientResourcesRegistry.class)
+    @ConditionalOnClass(name = {"io.lettuce.core.RedisClient"})
+    public ClientResourcesRegistry clientResourcesRegistry(ObjectProvider<ClientResources> clientResources,
+                                                           StoneRedisProperties stoneRedisProperties) {
+        StoneRedisProperties.ClientResourcesProperties properties = stoneRedisProperties.getClientResources();
+        return new ClientResourcesRegistry(clientResources.getIfAvailable(), properties.getIoThreadPoolSize(),
+                properties.getComputationThreadPoolSize());
+    }
+
+    /**
+     * Redis优雅停机协调器，容器关闭时等待正在执行的命令完成，并销毁该组件手动创建的所有连接工厂
+     */
+    @Bean
+    @ConditionalOnMissingBean(RedisShutdownCoordinator.class)
+    public RedisShutdownCoordinator redisShutdownCoordinator(StoneRedisProperties stoneRedisProperties) {
+        StoneRedisProperties.ShutdownProperties shutdown = stoneRedisProperties.getShutdown();
+        return new RedisShutdownCoordinator(shutdown.getAwaitTimeout(), shutdown.getCloseTimeout());
+    }
+
+    /**
+     * Redis连接预算，限制所有数据源、所有db的连接池加起来的总连接数，容器创建的默认连接工厂也占用预算
+     */
+    @Bean
+    @ConditionalOnMissingBean(RedisConnectionGovernor.class)
+    public RedisConnectionGovernor redisConnectionGovernor(StoneRedisProperties stoneRedisProperties,
+                                                           RedisProperties redisProperties,
+                                                           Environment environment,
+                                                           ObjectProvider<RedisConnectionFactory> redisConnectionFactory,
+                                                           RedisShutdownCoordinator redisShutdownCoordinator) {
+        StoneRedisProperties.ConnectionBudgetProperties budget = stoneRedisProperties.getConnectionBudget();
+        Set<String> dataSourceNames = new LinkedHashSet<>();
+        dataSourceNames.add(EnhanceRedisConstants.DefaultRedisHelperName.DEFAULT);
+        dataSourceNames.addAll(EnvironmentUtil.bindRedisDataSources(environment).keySet());
+        RedisConnectionGovernor governor = new RedisConnectionGovernor(budget.getMaxTotal(), budget.getWeights(),
+                dataSourceNames, budget.getMaxWait());
+        redisConnectionFactory.ifAvailable(connectionFactory -> governor.reserve(EnhanceRedisConstants.DefaultRedisHelperName.DEFAULT,
+                redisProperties.getDatabase(), RedisConnectionGovernor.getConnectionCount(connectionFactory)));
+        // 连接工厂销毁后归还预算
+        redisShutdownCoordinator.setConnectionGovernor(governor);
+        return governor;
+    }
+
+    /**
+     * Redis连接预热，应用对外提供服务之前按stone.redis.warmup配置预热各数据源指定db的连接
+     */
+    @Bean
+    @ConditionalOnMissingBean(RedisConnectionWarmer.class)
+    public RedisConnectionWarmer redisConnectionWarmer(StoneRedisProperties stoneRedisProperties) {
+        return new RedisConnectionWarmer(stoneRedisProperties.getWarmup());
+    }
+
+    /**
+     * 跨数据源、跨db分发执行，对一组数据源和db并行执行同一个回调
+     */
+    @Bean
+    @ConditionalOnMissingBean(RedisScatterGather.class)
+    public RedisScatterGather redisScatterGather(StoneRedisProperties stoneRedisProperties) {
+        StoneRedisProperties.ScatterGatherProperties scatterGather = stoneRedisProperties.getScatterGather();
+        return new RedisScatterGather(scatterGather.getParallelism(), scatterGather.getTimeout());
+    }
+
     /**
      * 注入RedisTemplate，key-value都使用string类型
      * RedisConnectionFactory由对应的spring-boot-autoconfigure自动配置到容器
@@ -82,10 +162,29 @@ public class RedisAutoConfiguration {
     @Primary
     @ConditionalOnStaticRedisHelper
     @Bean(name = {"redisHelper"})
-    public RedisHelper redisHelper(RedisTemplate<String, String> redisTemplate) {
+    public RedisHelper redisHelper(RedisTemplate<String, String> redisTemplate,
+                                   RedisProperties redisProperties,
+                                   StoneRedisProperties stoneRedisProperties) {
+        warnIgnoredValueSettings(stoneRedisProperties, redisProperties.getDatabase());
         return new RedisHelper(redisTemplate);
     }
 
+    /**
+     * 静态RedisHelper直接使用容器中的redisTemplate，编解码、压缩配置不生效，配置了时启动时提示
+     */
+    private static void warnIgnoredValueSettings(StoneRedisProperties stoneRedisProperties, int database) {
+        Map<Integer, String> valueCodecs = RedisDatabaseProperties.getValueCodecs(stoneRedisProperties.getDatabases());
+        String valueCodec = valueCodecs.getOrDefault(database, stoneRedisProperties.getValueCodec());
+        Map<Integer, RedisValueCompressor> compressors = RedisDatabaseProperties.getCompressors(stoneRedisProperties.getDatabases());
+        RedisValueCompressor compressor = compressors.containsKey(database) ? compressors.get(database)
+                : RedisCompressionProperties.createCompressor(stoneRedisProperties.getCompression());
+        boolean json = !StringUtils.hasText(valueCodec) || RedisValueCodec.JSON.equals(valueCodec);
+        if (!json || compressor != null) {
+            LOGGER.warn("value codec and compression of db{} are ignored by static RedisHelper, "
+                    + "set them on RedisOperationHelper explicitly or enable stone.redis.dynamic-database.", database);
+        }
+    }
+
     /**
      * 默认数据源的动态redisHelper
      * 这些参数由jedis或lettuce客户端帮我们自动配置并注入到容器
@@ -95,10 +194,14 @@ public class RedisAutoConfiguration {
     @Bean(name = {"redisHelper"})
     public RedisHelper dynamicRedisHelper(StringRedisTemplate redisTemplate,
                                           RedisProperties redisProperties,
+                                          StoneRedisProperties stoneRedisProperties,
                                           ObjectProvider<RedisSentinelConfiguration> sentinelConfiguration,
                                           ObjectProvider<RedisClusterConfiguration> clusterConfiguration,
                                           ObjectProvider<List<JedisClientConfigurationBuilderCustomizer>> jedisBuilderCustomizers,
-                                          ObjectProvider<List<LettuceClientConfigurationBuilderCustomizer>> builderCustomizers) {
+                                          ObjectProvider<List<LettuceClientConfigurationBuilderCustomizer>> builderCustomizers,
+                                          ObjectProvider<ClientResourcesRegistry> clientResourcesRegistry,
+                                          ObjectProvider<RedisConnectionGovernor> redisConnectionGovernor,
+                                          RedisShutdownCoordinator redisShutdownCoordinator) {
 
         // 构建动态RedisTemplate工厂
         DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory =
@@ -107,6 +210,20 @@ public class RedisAutoConfiguration {
                         clusterConfiguration.getIfAvailable(),
                         jedisBuilderCustomizers.getIfAvailable(),
                         builderCustomizers.getIfAvailable());
+        // 与其他数据源共享ClientResources
+        dynamicRedisTemplateFactory.setClientResourcesRegistry(clientResourcesRegistry.getIfAvailable());
+        dynamicRedisTemplateFactory.setSingleConnection(stoneRedisProperties.isSingleConnection());
+        dynamicRedisTemplateFactory.setShutdownCoordinator(redisShutdownCoordinator);
+        dynamicRedisTemplateFactory.setConnectionGovernor(redisConnectionGovernor.getIfAvailable());
+        dynamicRedisTemplateFactory.setClientType(stoneRedisProperties.getClientType());
+        // 每个db单独的连接池配置
+        dynamicRedisTemplateFactory.setDatabasePools(RedisDatabaseProperties.getPools(stoneRedisProperties.getDatabases()));
+        // 对象值的编解码，db单独配置的优先
+        dynamicRedisTemplateFactory.setValueCodec(stoneRedisProperties.getValueCodec());
+        dynamicRedisTemplateFactory.setDatabaseValueCodecs(RedisDatabaseProperties.getValueCodecs(stoneRedisProperties.getDatabases()));
+        // 值压缩，db单独配置的优先
+        dynamicRedisTemplateFactory.setCompressor(RedisCompressionProperties.createCompressor(stoneRedisProperties.getCompression()));
+        dynamicRedisTemplateFactory.setDatabaseCompressors(RedisDatabaseProperties.getCompressors(stoneRedisProperties.getDatabases()));
         // ======================================================================================================
         // 这里在注入的时候默认值注入一个默认的redisTemplate，以及将这个redisTemplate放入到map中，该redisTemplate
         // 操作的是配置文件中使用spring.redis.database属性指定的db（若不显示指定，则使用的0号db）
@@ -115,13 +232,18 @@ public class RedisAutoConfiguration {
         // ======================================================================================================
 
         DynamicRedisTemplate<String, String> dynamicRedisTemplate = new DynamicRedisTemplate<>(dynamicRedisTemplateFactory);
-        // 当不指定库时，默认使用的RedisTemplate来操作Redis(直接获取容器中的)
-        dynamicRedisTemplate.setDefaultRedisTemplate(redisTemplate);
-        Map<Object, RedisTemplate<String, String>> map = new HashMap<>(8);
-        // 配置文件中指定使用几号db
-        map.put(redisProperties.getDatabase(), redisTemplate);
-        // 将redisTemplate缓存起来
-        dynamicRedisTemplate.setRedisTemplates(map);
+        // 动态创建的redisTemplate按配置淘汰
+        StoneRedisProperties.TemplateCacheProperties templateCache = stoneRedisProperties.getTemplateCache();
+        dynamicRedisTemplate.configureRedisTemplateCache(templateCache.getMaxSize(), templateCache.getIdleTimeout(),
+                templateCache.getDestroyDelay());
+        redisShutdownCoordinator.register(dynamicRedisTemplate.getRedisTemplateCache());
+        // 当不指定库时，默认使用容器中的连接工厂操作Redis，包装为带有该db编解码、压缩配置的RedisTemplate，
+        // 直接使用容器中的StringRedisTemplate时stone.redis.value-codec、compression对默认db不生效
+        RedisTemplate<String, String> defaultRedisTemplate = dynamicRedisTemplateFactory.createRedisTemplate(
+                redisTemplate.getRequiredConnectionFactory(), redisProperties.getDatabase());
+        dynamicRedisTemplate.setDefaultRedisTemplate(defaultRedisTemplate);
+        // 配置文件中指定使用几号db，将redisTemplate缓存起来
+        dynamicRedisTemplate.setRedisTemplate(redisProperties.getDatabase(), defaultRedisTemplate);
 
         return new DynamicRedisHelper(dynamicRedisTemplate);
     }
@@ -0,0 +1,63 @@
+package com.multiple.data.source.database.config;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * Redis客户端类型
+ */
+public enum RedisClientType {
+
+    /**
+     * lettuce，基于netty的多路复用连接，适合大量并发请求共享少量连接
+     */
+    LETTUCE("io.lettuce.core.RedisClient"),
+
+    /**
+     * jedis，阻塞式连接池，适合小数据量、对延迟敏感的数据源
+     */
+    JEDIS("redis.clients.jedis.Jedis");
+
+    /**
+     * 客户端的标志类，用于判断类路径下是否有该客户端
+     */
+    private final String className;
+
+    RedisClientType(String className) {
+        this.className = className;
+    }
+
+    /**
+     * 类路径下是否有该客户端
+     */
+    public boolean isPresent() {
+        return ClassUtils.isPresent(className, RedisClientType.class.getClassLoader());
+    }
+
+    /**
+     * 类路径下可用的客户端，lettuce优先，只在第一次调用时检测
+     */
+    public static RedisClientType detect() {
+        if (Detected.CLIENT_TYPE == null) {
+            throw new RuntimeException("redis client not found.");
+        }
+        return Detected.CLIENT_TYPE;
+    }
+
+    /**
+     * 延迟到第一次使用时检测，检测结果缓存在静态常量中
+     */
+    private static final class Detected {
+
+        private static final RedisClientType CLIENT_TYPE;
+
+        static {
+            if (LETTUCE.isPresent()) {
+                CLIENT_TYPE = LETTUCE;
+            } else if (JEDIS.isPresent()) {
+                CLIENT_TYPE = JEDIS;
+            } else {
+                CLIENT_TYPE = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.multiple.data.source.database.config;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis连接预算
+ * 每个数据源、每个db懒加载创建的连接工厂都有自己的连接池，总连接数没有上限，误用opsOtherDb或数据源过多时可能耗尽redis服务端的maxclients。
+ * 创建连接工厂之前按其连接池大小（maxActive）从预算中预留连接数，连接工厂销毁时归还：
+ * 1、所有数据源的总连接数不超过maxTotal
+ * 2、每个数据源按权重分得maxTotal的一部分，不能挤占其他数据源
+ * 3、预算不足时在maxWait内等待其他连接工厂归还，超时或maxWait为0时立即失败
+ * <p>
+ * 权重只在数据源之间分配，不在db之间按权重分配：db的连接工厂懒加载创建，事先不知道会用到哪些db，无法按权重切分；
+ * 单个db占用的连接数由该db的连接池大小（databases中每个db的pool配置）决定，在数据源的份额内先到先得。
+ * <p>
+ * maxTotal小于等于0时不限制，只记录分配情况
+ */
+public class RedisConnectionGovernor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisConnectionGovernor.class);
+
+    /**
+     * 没有配置权重的数据源的默认权重
+     */
+    private static final int DEFAULT_WEIGHT = 1;
+
+    /**
+     * 总连接数上限，小于等于0表示不限制
+     */
+    private final int maxTotal;
+
+    /**
+     * 预算不足时的最大等待时长
+     */
+    private final Duration maxWait;
+
+    /**
+     * 每个数据源可使用的连接数，key: 数据源名称
+     */
+    private final Map<String, Integer> quotas = new HashMap<>();
+
+    /**
+     * 每个数据源已分配的连接数，key: 数据源名称
+     */
+    private final Map<String, Integer> allocatedByDataSource = new HashMap<>();
+
+    /**
+     * 已分配的连接工厂
+     */
+    private final Map<RedisConnectionFactory, Allocation> allocations = new IdentityHashMap<>();
+
+    /**
+     * 不对应连接工厂的固定分配（例如容器创建的默认连接工厂）
+     */
+    private final Map<String, Allocation> reservations = new LinkedHashMap<>();
+
+    private int allocated;
+
+    /**
+     * @param maxTotal        总连接数上限，小于等于0表示不限制
+     * @param weights         数据源权重，key: 数据源名称，没有配置的数据源权重为1
+     * @param dataSourceNames 所有数据源名称
+     * @param maxWait         预算不足时的最大等待时长，为空或0表示立即失败
+     */
+    public RedisConnectionGovernor(int maxTotal, Map<String, Integer> weights, Collection<String> dataSourceNames,
+                                   Duration maxWait) {
+        this.maxTotal = maxTotal;
+        this.maxWait = maxWait == null ? Duration.ZERO : maxWait;
+        Map<String, Integer> dataSourceWeights = weights == null ? Collections.emptyMap() : weights;
+        Set<String> names = new LinkedHashSet<>(dataSourceNames);
+        names.addAll(dataSourceWeights.keySet());
+        int totalWeight = names.stream().mapToInt(name -> weight(dataSourceWeights, name)).sum();
+        for (String name : names) {
+            int quota = maxTotal <= 0 ? Integer.MAX_VALUE
+                    : (int) Math.max(1L, (long) maxTotal * weight(dataSourceWeights, name) / Math.max(totalWeight, 1));
+            quotas.put(name, quota);
+        }
+        if (maxTotal > 0) {
+            LOGGER.info("redis connection budget {}, quotas: {}", maxTotal, quotas);
+        }
+    }
+
+    /**
+     * 为即将创建的连接工厂预留连接数，预算不足时等待
+     *
+     * @param dataSourceName 数据源名称
+     * @param database       db号
+     * @param connections    连接工厂最多使用的连接数
+     * @return 预留结果，连接工厂创建后通过 {@link #track(RedisConnectionFactory, Allocation)} 关联，创建失败时通过 {@link #release(Allocation)} 归还
+     */
+    public synchronized Allocation acquire(String dataSourceName, int database, int connections) {
+        int quota = getQuota(dataSourceName);
+        if (connections > quota) {
+            throw new IllegalStateException(String.format("redis datasource %s db%d needs %d connections, exceeds quota %d.",
+                    dataSourceName, database, connections, quota));
+        }
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        while (!isAvailable(dataSourceName, connections, quota)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IllegalStateException(String.format(
+                        "redis connection budget exhausted, datasource %s db%d needs %d connections, allocation: %s",
+                        dataSourceName, database, connections, getAllocations()));
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for redis connection budget.", e);
+            }
+        }
+        allocated += connections;
+        allocatedByDataSource.merge(dataSourceName, connections, Integer::sum);
+        return new Allocation(dataSourceName, database, connections);
+    }
+
+    /**
+     * 预留不对应连接工厂的连接数（例如容器创建的默认连接工厂），永久占用不归还
+     */
+    public synchronized void reserve(String dataSourceName, int database, int connections) {
+        Allocation allocation = acquire(dataSourceName, database, connections);
+        reservations.put(allocation.getKey(), allocation);
+    }
+
+    /**
+     * 关联连接工厂与预留结果，连接工厂销毁时归还
+     */
+    public synchronized void track(RedisConnectionFactory connectionFactory, Allocation allocation) {
+        allocations.put(connectionFactory, allocation);
+    }
+
+    /**
+     * 连接工厂销毁，归还其预留的连接数
+     */
+    public synchronized void release(RedisConnectionFactory connectionFactory) {
+        Allocation allocation = allocations.remove(connectionFactory);
+        if (allocation != null) {
+            release(allocation);
+        }
+    }
+
+    /**
+     * 归还预留的连接数
+     */
+    public synchronized void release(Allocation allocation) {
+        allocated -= allocation.getConnections();
+        allocatedByDataSource.computeIfPresent(allocation.getDataSourceName(),
+                (name, connections) -> connections - allocation.getConnections());
+        notifyAll();
+    }
+
+    /**
+     * 总连接数上限，小于等于0表示不限制
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * 已分配的总连接数
+     */
+    public synchronized int getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * 数据源已分配的连接数
+     */
+    public synchronized int getAllocated(String dataSourceName) {
+        return allocatedByDataSource.getOrDefault(dataSourceName, 0);
+    }
+
+    /**
+     * 数据源可使用的连接数
+     */
+    public synchronized int getQuota(String dataSourceName) {
+        if (maxTotal <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        // 启动时不知道的数据源只允许一个连接
+        return quotas.getOrDefault(dataSourceName, 1);
+    }
+
+    /**
+     * 当前分配情况快照，key: 数据源名称#db号，value: 连接数
+     */
+    public synchronized Map<String, Integer> getAllocations() {
+        Map<String, Integer> snapshot = new LinkedHashMap<>();
+        reservations.values().forEach(allocation -> snapshot.merge(allocation.getKey(), allocation.getConnections(), Integer::sum));
+        allocations.values().forEach(allocation -> snapshot.merge(allocation.getKey(), allocation.getConnections(), Integer::sum));
+        return snapshot;
+    }
+
+    /**
+     * 已创建的连接工厂最多使用的连接数，即连接池的maxTotal，lettuce还有一个共享的本地连接
+     */
+    public static int getConnectionCount(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof LettuceConnectionFactory) {
+            LettuceClientConfiguration clientConfiguration = ((LettuceConnectionFactory) connectionFactory).getClientConfiguration();
+            if (clientConfiguration instanceof LettucePoolingClientConfiguration) {
+                int maxTotal = ((LettucePoolingClientConfiguration) clientConfiguration).getPoolConfig().getMaxTotal();
+                return maxTotal <= 0 ? 1 : maxTotal + 1;
+            }
+        } else if (connectionFactory instanceof JedisConnectionFactory) {
+            GenericObjectPoolConfig poolConfig = ((JedisConnectionFactory) connectionFactory).getPoolConfig();
+            if (poolConfig != null && poolConfig.getMaxTotal() > 0) {
+                return poolConfig.getMaxTotal();
+            }
+        }
+        return 1;
+    }
+
+    private boolean isAvailable(String dataSourceName, int connections, int quota) {
+        if (maxTotal <= 0) {
+            return true;
+        }
+        return allocated + connections <= maxTotal
+                && allocatedByDataSource.getOrDefault(dataSourceName, 0) + connections <= quota;
+    }
+
+    private static int weight(Map<String, Integer> weights, String name) {
+        Integer weight = weights.get(name);
+        return weight == null || weight <= 0 ? DEFAULT_WEIGHT : weight;
+    }
+
+    /**
+     * 一次预留
+     */
+    public static final class Allocation {
+
+        private final String dataSourceName;
+
+        private final int database;
+
+        private final int connections;
+
+        private Allocation(String dataSourceName, int database, int connections) {
+            this.dataSourceName = dataSourceName;
+            this.database = database;
+            this.connections = connections;
+        }
+
+        public String getDataSourceName() {
+            return dataSourceName;
+        }
+
+        public int getDatabase() {
+            return database;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        private String getKey() {
+            return dataSourceName + "#" + database;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.multiple.data.source.database.config;
+
+import com.multiple.data.source.constant.EnhanceRedisConstants;
+import com.multiple.data.source.database.helper.RedisHelper;
+import com.multiple.data.source.database.options.DynamicRedisTemplate;
+import com.multiple.data.source.database.registrar.StoneRedisProperties;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis连接预热
+ * 所有单例创建完成后（容器刷新完成、应用对外提供服务之前），按 <code>stone.redis.warmup.databases</code> 配置提前创建数据源指定db的RedisTemplate，
+ * 并行地把连接池填充到min-idle，每个连接发送PING校验，避免发布后的第一批请求承担建连、AUTH、SELECT以及创建连接工厂的耗时。
+ * <p>
+ * lettuce默认共享一个本地连接执行普通命令，这种情况下只预热共享连接
+ */
+public class RedisConnectionWarmer implements SmartInitializingSingleton, ApplicationContextAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisConnectionWarmer.class);
+
+    private final StoneRedisProperties.WarmupProperties properties;
+
+    private ApplicationContext applicationContext;
+
+    public RedisConnectionWarmer(StoneRedisProperties.WarmupProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterSingletonsInstantiated() {
+        Map<String, List<Integer>> databases = properties.getDatabases();
+        if (databases == null || databases.isEmpty()) {
+            return;
+        }
+
+        // 在当前线程获取所有要预热的数据源
+        List<String> targets = new ArrayList<>();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        databases.forEach((name, dbs) -> {
+            RedisHelper redisHelper = getRedisHelper(name);
+            if (redisHelper == null) {
+                LOGGER.warn("redis datasource {} not found, skip warmup.", name);
+                return;
+            }
+            RedisTemplate<String, String> redisTemplate = redisHelper.getRedisTemplate();
+            if (!(redisTemplate instanceof DynamicRedisTemplate)) {
+                // 没有开启动态切换db，只能预热默认db
+                targets.add(name);
+                tasks.add(() -> warmup(redisTemplate));
+                return;
+            }
+            DynamicRedisTemplate<String, String> dynamicRedisTemplate = (DynamicRedisTemplate<String, String>) redisTemplate;
+            for (Integer db : dbs == null ? Collections.<Integer>emptyList() : dbs) {
+                targets.add(name + "#" + db);
+                tasks.add(() -> {
+                    RedisTemplate<String, String> template = dynamicRedisTemplate.getRedisTemplate(db);
+                    // 预热过的db是常用的db，固定缓存不参与淘汰
+                    dynamicRedisTemplate.setRedisTemplate(db, template);
+                    return warmup(template);
+                });
+            }
+        });
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        int parallelism = properties.getParallelism() > 0 ? Math.min(properties.getParallelism(), tasks.size()) : tasks.size();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "redis-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.currentTimeMillis();
+        List<Future<Integer>> futures;
+        try {
+            futures = executor.invokeAll(tasks, Math.max(properties.getTimeout().toMillis(), 1), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("redis connection warmup interrupted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<String> failed = new ArrayList<>();
+        int connections = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            try {
+                connections += futures.get(i).get();
+            } catch (CancellationException e) {
+                failed.add(targets.get(i) + "(timeout)");
+            } catch (ExecutionException e) {
+                failed.add(targets.get(i) + "(" + e.getCause().getMessage() + ")");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("redis connection warmup interrupted.", e);
+            }
+        }
+        LOGGER.info("warmup {} redis connections of {} in {} ms.", connections, targets, System.currentTimeMillis() - start);
+
+        if (!failed.isEmpty()) {
+            if (properties.isFailFast()) {
+                throw new IllegalStateException("redis connection warmup failed: " + failed);
+            }
+            LOGGER.warn("redis connection warmup failed: {}", failed);
+        }
+    }
+
+    /**
+     * 同时借出min-idle个连接并PING，全部归还后连接池中就保留了这些空闲连接
+     *
+     * @return 预热的连接数
+     */
+    private static int warmup(RedisTemplate<String, String> redisTemplate) {
+        RedisConnectionFactory connectionFactory = redisTemplate.getRequiredConnectionFactory();
+        int count = getWarmupConnectionCount(connectionFactory);
+        List<RedisConnection> connections = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                RedisConnection connection = connectionFactory.getConnection();
+                connections.add(connection);
+                connection.ping();
+            }
+        } finally {
+            for (RedisConnection connection : connections) {
+                connection.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 需要预热的连接数：连接池的min-idle，至少一个
+     */
+    private static int getWarmupConnectionCount(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof DatabaseSelectingConnectionFactory) {
+            connectionFactory = ((DatabaseSelectingConnectionFactory) connectionFactory).getDelegate();
+        }
+        GenericObjectPoolConfig poolConfig = null;
+        if (connectionFactory instanceof LettuceConnectionFactory) {
+            LettuceConnectionFactory lettuceConnectionFactory = (LettuceConnectionFactory) connectionFactory;
+            // 共享本地连接时普通命令都走共享连接，预热它即可
+            if (!lettuceConnectionFactory.getShareNativeConnection()
+                    && lettuceConnectionFactory.getClientConfiguration() instanceof LettucePoolingClientConfiguration) {
+                poolConfig = ((LettucePoolingClientConfiguration) lettuceConnectionFactory.getClientConfiguration()).getPoolConfig();
+            }
+        } else if (connectionFactory instanceof JedisConnectionFactory) {
+            poolConfig = ((JedisConnectionFactory) connectionFactory).getPoolConfig();
+        }
+        return poolConfig == null ? 1 : Math.max(poolConfig.getMinIdle(), 1);
+    }
+
+    /**
+     * 获取数据源的RedisHelper，<i>default</i> 表示默认数据源
+     */
+    private RedisHelper getRedisHelper(String name) {
+        String beanName = EnhanceRedisConstants.DefaultRedisHelperName.DEFAULT.equals(name)
+                ? EnhanceRedisConstants.DefaultRedisHelperName.REDIS_HELPER
+                : name + EnhanceRedisConstants.MultiSource.REDIS_HELPER;
+        return applicationContext.containsBean(beanName) ? applicationContext.getBean(beanName, RedisHelper.class) : null;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+}
@@ -0,0 +1,264 @@
+package com.multiple.data.source.database.config;
+
+import com.multiple.data.source.database.options.RedisTemplateCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis优雅停机协调器
+ * 手动创建的连接工厂（DynamicRedisTemplateFactory创建的每个db的连接工厂）不受spring容器管理，容器关闭时不会调用destroy，
+ * 连接池和netty线程会一直泄漏到JVM退出。协调器跟踪该组件创建的所有连接工厂以及正在执行的命令，容器关闭时：
+ * 1、不再接收新的命令
+ * 2、在限定时长内等待正在执行的命令完成
+ * 3、并行销毁所有连接工厂（关闭连接池），ClientResources随后由ClientResourcesRegistry释放
+ */
+public class RedisShutdownCoordinator implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisShutdownCoordinator.class);
+
+    /**
+     * 并行关闭连接工厂的最大线程数
+     */
+    private static final int MAX_CLOSE_THREADS = 8;
+
+    /**
+     * 跟踪的连接工厂
+     */
+    private final Set<RedisConnectionFactory> connectionFactories = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * 跟踪的RedisTemplate缓存，停机时关闭（停止空闲检查）
+     */
+    private final Set<RedisTemplateCache<?, ?>> redisTemplateCaches = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * 正在执行的命令数量
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 等待正在执行的命令完成的最大时长
+     */
+    private final Duration awaitTimeout;
+
+    /**
+     * 关闭连接工厂的最大时长
+     */
+    private final Duration closeTimeout;
+
+    private volatile boolean running;
+
+    /**
+     * 是否接收新的命令，容器启动过程中（例如@PostConstruct中）也要能执行命令，所以只在停机时关闭，关闭后不再恢复
+     */
+    private volatile boolean accepting = true;
+
+    /**
+     * 连接预算，连接工厂销毁后归还其预留的连接数
+     */
+    private volatile RedisConnectionGovernor connectionGovernor;
+
+    public RedisShutdownCoordinator(Duration awaitTimeout, Duration closeTimeout) {
+        this.awaitTimeout = awaitTimeout == null ? Duration.ZERO : awaitTimeout;
+        this.closeTimeout = closeTimeout == null ? Duration.ZERO : closeTimeout;
+    }
+
+    /**
+     * 跟踪连接工厂，容器关闭时销毁
+     */
+    public void register(RedisConnectionFactory connectionFactory) {
+        connectionFactories.add(connectionFactory);
+    }
+
+    /**
+     * 跟踪RedisTemplate缓存：淘汰的连接工厂通过协调器销毁并归还连接预算，停机时关闭缓存，取消其空闲检查任务
+     */
+    public void register(RedisTemplateCache<?, ?> redisTemplateCache) {
+        redisTemplateCache.setConnectionFactoryDestroyer(this::destroy);
+        redisTemplateCaches.add(redisTemplateCache);
+    }
+
+    /**
+     * 提前销毁连接工厂（例如RedisTemplate被淘汰），之后不再跟踪
+     */
+    public void destroy(RedisConnectionFactory connectionFactory) {
+        if (connectionFactories.remove(connectionFactory)) {
+            destroyConnectionFactory(connectionFactory);
+            RedisConnectionGovernor governor = this.connectionGovernor;
+            if (governor != null) {
+                governor.release(connectionFactory);
+            }
+        }
+    }
+
+    public void setConnectionGovernor(RedisConnectionGovernor connectionGovernor) {
+        this.connectionGovernor = connectionGovernor;
+    }
+
+    /**
+     * 命令开始执行，停机后拒绝新的命令
+     */
+    public void beforeCommand() {
+        inFlight.incrementAndGet();
+        if (!accepting) {
+            afterCommand();
+            throw new IllegalStateException("redis datasource is shutting down, new command rejected.");
+        }
+    }
+
+    /**
+     * 命令执行结束
+     */
+    public void afterCommand() {
+        if (inFlight.decrementAndGet() == 0 && !accepting) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 正在执行的命令数量
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 跟踪的连接工厂数量
+     */
+    public int getConnectionFactoryCount() {
+        return connectionFactories.size();
+    }
+
+    /**
+     * 停机时已经销毁了所有连接工厂，缓存的RedisTemplate仍然指向它们，所以stop之后再次start也不恢复接收命令
+     */
+    @Override
+    public void start() {
+        if (!accepting) {
+            LOGGER.warn("redis connection factories were destroyed on stop, commands stay rejected after restart.");
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        accepting = false;
+        long start = System.currentTimeMillis();
+        awaitInFlight();
+        closeConnectionFactories();
+        // 连接工厂已经并行销毁，关闭缓存时只取消空闲检查并清空缓存
+        redisTemplateCaches.forEach(RedisTemplateCache::close);
+        redisTemplateCaches.clear();
+        LOGGER.info("redis datasource shutdown in {} ms.", System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        try {
+            stop();
+        } finally {
+            callback.run();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    /**
+     * 最先启动、最后停止（停止顺序与phase从大到小一致），消息监听、定时任务等使用redis的组件都停止之后才拒绝新的命令。
+     * spring boot 2.1的内嵌web容器在所有lifecycle停止之后才关闭，停机期间仍在处理的请求会被拒绝执行redis命令
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * 在限定时长内等待正在执行的命令完成
+     */
+    private void awaitInFlight() {
+        long deadline = System.currentTimeMillis() + awaitTimeout.toMillis();
+        synchronized (inFlight) {
+            long remaining;
+            while (inFlight.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    inFlight.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (inFlight.get() > 0) {
+            LOGGER.warn("{} redis commands still in flight after {} ms, closing anyway.", inFlight.get(),
+                    awaitTimeout.toMillis());
+        }
+    }
+
+    /**
+     * 并行销毁所有连接工厂
+     */
+    private void closeConnectionFactories() {
+        List<RedisConnectionFactory> factories = new ArrayList<>(connectionFactories);
+        connectionFactories.clear();
+        if (factories.isEmpty()) {
+            return;
+        }
+        List<Callable<Object>> tasks = new ArrayList<>(factories.size());
+        for (RedisConnectionFactory connectionFactory : factories) {
+            Runnable task = () -> destroyConnectionFactory(connectionFactory);
+            tasks.add(Executors.callable(task));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(factories.size(), MAX_CLOSE_THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "redis-shutdown");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            executor.invokeAll(tasks, Math.max(closeTimeout.toMillis(), 1), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info("{} redis connection factories closed.", factories.size());
+    }
+
+    private static void destroyConnectionFactory(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof DisposableBean) {
+            try {
+                ((DisposableBean) connectionFactory).destroy();
+            } catch (Exception e) {
+                LOGGER.warn("destroy redis connection factory failed.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.multiple.data.source.database.convert;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.avro.AvroMapper;
+import com.fasterxml.jackson.dataformat.avro.AvroSchema;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Avro二进制编解码，按类生成schema并缓存reader、writer，字段名不写入数据，体积最小
+ * 注意：数据中不包含schema，读写两端的类结构必须一致，修改类的字段后旧数据无法读取
+ */
+public class AvroRedisValueCodec implements RedisValueCodec {
+
+    private final AvroMapper avroMapper;
+
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public AvroRedisValueCodec() {
+        this.avroMapper = new AvroMapper();
+        this.avroMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public String getName() {
+        return AVRO;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        Class<?> type = value.getClass();
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = avroMapper.writer(schema(type));
+            writers.putIfAbsent(type, writer);
+        }
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = avroMapper.readerFor(type).with(schema(type));
+            readers.putIfAbsent(type, reader);
+        }
+        return reader.readValue(bytes);
+    }
+
+    private AvroSchema schema(Class<?> type) throws IOException {
+        return avroMapper.schemaFor(type);
+    }
+}
@@ -0,0 +1,146 @@
+package com.multiple.data.source.database.convert;
+
+import java.util.TimeZone;
+
+/**
+ * yyyy-MM-dd'T'HH:mm:ss.SSS 格式与时间戳的直接转换，不依赖Calendar，只处理1900-9999年
+ * 日期与天数的换算使用公历算法（days from civil），不支持的输入返回空或 {@link #INVALID}，由调用方回退到FastDateFormat
+ */
+final class DateCodec {
+
+    /**
+     * 格式化后的长度
+     */
+    static final int LENGTH = 23;
+
+    /**
+     * 无法解析
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 支持的年份范围，1582年之前Calendar使用儒略历，与公历算法不一致
+     */
+    private static final int MIN_YEAR = 1900;
+
+    private static final int MAX_YEAR = 9999;
+
+    private DateCodec() {
+    }
+
+    /**
+     * 格式化时间戳
+     *
+     * @return 格式化后的字符，年份超出1900-9999时返回null
+     */
+    static char[] format(long time, TimeZone timeZone) {
+        long local = time + timeZone.getOffset(time);
+        long days = Math.floorDiv(local, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(local, MILLIS_PER_DAY);
+
+        // civil from days
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return null;
+        }
+
+        char[] text = new char[LENGTH];
+        write(text, 0, (int) year, 4);
+        text[4] = '-';
+        write(text, 5, month, 2);
+        text[7] = '-';
+        write(text, 8, day, 2);
+        text[10] = 'T';
+        write(text, 11, millisOfDay / 3_600_000, 2);
+        text[13] = ':';
+        write(text, 14, millisOfDay / 60_000 % 60, 2);
+        text[16] = ':';
+        write(text, 17, millisOfDay / 1000 % 60, 2);
+        text[19] = '.';
+        write(text, 20, millisOfDay % 1000, 3);
+        return text;
+    }
+
+    /**
+     * 解析从offset开始的 {@link #LENGTH} 个字符
+     *
+     * @return 时间戳，格式不匹配、字段越界或处于夏令时切换时返回 {@link #INVALID}
+     */
+    static long parse(char[] text, int offset, TimeZone timeZone) {
+        if (text[offset + 4] != '-' || text[offset + 7] != '-' || text[offset + 10] != 'T'
+                || text[offset + 13] != ':' || text[offset + 16] != ':' || text[offset + 19] != '.') {
+            return INVALID;
+        }
+        int year = read(text, offset, 4);
+        int month = read(text, offset + 5, 2);
+        int day = read(text, offset + 8, 2);
+        int hour = read(text, offset + 11, 2);
+        int minute = read(text, offset + 14, 2);
+        int second = read(text, offset + 17, 2);
+        int millis = read(text, offset + 20, 3);
+        if (year < MIN_YEAR || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0) {
+            return INVALID;
+        }
+
+        // days from civil
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097 + doe - 719468;
+
+        long local = days * MILLIS_PER_DAY + hour * 3_600_000L + minute * 60_000L + second * 1000L + millis;
+        int offsetMillis = timeZone.getOffset(local - timeZone.getRawOffset());
+        long time = local - offsetMillis;
+        // 夏令时切换附近本地时间不唯一或不存在，交给FastDateFormat处理
+        return timeZone.getOffset(time) == offsetMillis ? time : INVALID;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static void write(char[] text, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * 读取固定位数的数字，包含非数字字符时返回-1
+     */
+    private static int read(char[] text, int offset, int digits) {
+        int value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -1,6 +1,7 @@
 package com.multiple.data.source.database.convert;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.multiple.data.source.database.helper.RedisHelper;
@@ -13,6 +14,10 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 
+/**
+ * Date按 {@link RedisHelper#DATE_FORMAT} 格式反序列化
+ * 标准格式的字符串直接从解析器的字符缓冲区计算时间戳，不创建中间String和Calendar，其他情况使用FastDateFormat
+ */
 public class DateDeserializer extends JsonDeserializer<Date> {
 	private static final Logger logger = LoggerFactory.getLogger(DateDeserializer.class);
 
@@ -20,6 +25,12 @@ public class DateDeserializer extends JsonDeserializer<Date> {
 
 	@Override
 	public Date deserialize(JsonParser jsonParser, DeserializationContext ctxt) throws IOException {
+		if (jsonParser.hasToken(JsonToken.VALUE_STRING) && jsonParser.getTextLength() == DateCodec.LENGTH) {
+			long time = DateCodec.parse(jsonParser.getTextCharacters(), jsonParser.getTextOffset(), DATE_FORMAT.getTimeZone());
+			if (time != DateCodec.INVALID) {
+				return new Date(time);
+			}
+		}
 		try {
 			return DATE_FORMAT.parse(jsonParser.getValueAsString());
 		} catch (ParseException e) {
@@ -27,4 +38,4 @@ public class DateDeserializer extends JsonDeserializer<Date> {
 			return null;
 		}
 	}
-}
\ No newline at end of file
+}
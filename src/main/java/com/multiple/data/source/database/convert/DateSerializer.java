@@ -9,11 +9,20 @@ import org.apache.commons.lang3.time.FastDateFormat;
 import java.io.IOException;
 import java.util.Date;
 
+/**
+ * Date按 {@link RedisHelper#DATE_FORMAT} 格式序列化
+ * 直接计算年月日时分秒写入char数组，不创建Calendar、StringBuilder和中间String，年份超出1900-9999时使用FastDateFormat
+ */
 public class DateSerializer extends JsonSerializer<Date>{
 	private static final FastDateFormat DATE_FORMAT = FastDateFormat.getInstance(RedisHelper.DATE_FORMAT);
 
     @Override
     public void serialize(Date date, JsonGenerator jsonGenerator, SerializerProvider serializers) throws IOException {
-        jsonGenerator.writeString(DATE_FORMAT.format(date));
+        char[] text = DateCodec.format(date.getTime(), DATE_FORMAT.getTimeZone());
+        if (text == null) {
+            jsonGenerator.writeString(DATE_FORMAT.format(date));
+            return;
+        }
+        jsonGenerator.writeString(text, 0, text.length);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package com.multiple.data.source.database.convert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于Jackson ObjectMapper的编解码（json、smile）
+ */
+public class JacksonRedisValueCodec implements RedisValueCodec {
+
+    private final String name;
+
+    private final RedisJsonCodec codec;
+
+    /**
+     * 字符串是否直接以UTF-8写入（不加引号），文本JSON为了与字符串操作兼容时开启
+     */
+    private final boolean rawString;
+
+    public JacksonRedisValueCodec(String name, RedisJsonCodec codec, boolean rawString) {
+        this.name = name;
+        this.codec = codec;
+        this.rawString = rawString;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        if (rawString && value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        return codec.writeValueAsBytes(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+        if (rawString && type == String.class) {
+            return (T) new String(bytes, StandardCharsets.UTF_8);
+        }
+        return codec.readValue(bytes, type);
+    }
+}
@@ -0,0 +1,134 @@
+package com.multiple.data.source.database.convert;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Jackson编解码
+ * 按类型缓存构建好的ObjectReader、ObjectWriter（List&lt;T&gt;的JavaType也只构建一次），
+ * 避免每次读写都通过ObjectMapper的通用入口重新解析类型、创建reader/writer
+ */
+public class RedisJsonCodec {
+
+    /**
+     * 默认的编解码，RedisOperationHelper使用
+     */
+    public static final RedisJsonCodec DEFAULT = new RedisJsonCodec(createObjectMapper());
+
+    /**
+     * 每种缓存最多缓存的类型数量，超过后不再缓存（避免动态生成的类导致缓存无限增长）
+     */
+    private static final int MAX_CACHED_TYPES = 1024;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final Map<Type, ObjectReader> typeReferenceReaders = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, ObjectReader> listReaders = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public RedisJsonCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 创建默认的ObjectMapper：Date使用 {@link com.multiple.data.source.database.helper.RedisHelper#DATE_FORMAT} 格式，忽略未知属性
+     */
+    public static ObjectMapper createObjectMapper() {
+        return createObjectMapper(new ObjectMapper());
+    }
+
+    /**
+     * 按默认配置初始化ObjectMapper，用于其他数据格式（例如Smile）的ObjectMapper
+     */
+    public static ObjectMapper createObjectMapper(ObjectMapper objectMapper) {
+        JavaTimeModule javaTimeModule = new JavaTimeModule();
+        javaTimeModule.addSerializer(Date.class, new DateSerializer());
+        javaTimeModule.addDeserializer(Date.class, new DateDeserializer());
+        objectMapper.registerModule(javaTimeModule);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return objectMapper;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    public ObjectReader reader(Class<?> type) {
+        return cached(readers, type, objectMapper::readerFor);
+    }
+
+    public ObjectReader reader(TypeReference<?> typeReference) {
+        return cached(typeReferenceReaders, typeReference.getType(),
+                type -> objectMapper.readerFor(objectMapper.getTypeFactory().constructType(type)));
+    }
+
+    /**
+     * List&lt;elementType&gt;的reader
+     */
+    public ObjectReader listReader(Class<?> elementType) {
+        return cached(listReaders, elementType,
+                type -> objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, type)));
+    }
+
+    /**
+     * 按对象的运行时类型获取writer，与ObjectMapper.writeValue的结果一致
+     */
+    public ObjectWriter writer(Class<?> type) {
+        return cached(writers, type, objectMapper::writerFor);
+    }
+
+    public String writeValueAsString(Object value) throws JsonProcessingException {
+        return writer(value.getClass()).writeValueAsString(value);
+    }
+
+    public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+        return writer(value.getClass()).writeValueAsBytes(value);
+    }
+
+    public <T> T readValue(String json, Class<T> type) throws IOException {
+        return reader(type).readValue(json);
+    }
+
+    public <T> T readValue(byte[] json, Class<T> type) throws IOException {
+        return reader(type).readValue(json);
+    }
+
+    public <T> T readValue(String json, TypeReference<T> typeReference) throws IOException {
+        return reader(typeReference).readValue(json);
+    }
+
+    public <T> List<T> readList(String json, Class<T> elementType) throws IOException {
+        return listReader(elementType).readValue(json);
+    }
+
+    private static <K, V> V cached(Map<K, V> cache, K key, Function<K, V> factory) {
+        V value = cache.get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            if (cache.size() < MAX_CACHED_TYPES) {
+                V existing = cache.putIfAbsent(key, value);
+                if (existing != null) {
+                    value = existing;
+                }
+            }
+        }
+        return value;
+    }
+}
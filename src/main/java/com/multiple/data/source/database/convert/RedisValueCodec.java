@@ -0,0 +1,36 @@
+package com.multiple.data.source.database.convert;
+
+import java.io.IOException;
+
+/**
+ * 对象与redis中存储的字节之间的编解码
+ * RedisOperationHelper的对象方法（objectSet、objectMultiSet、strGet(key, Class)等）使用数据源或db配置的编解码，
+ * 内置json、smile、avro三种，也可以通过 {@link RedisValueCodecs#register(RedisValueCodec)}
+ * 或 META-INF/services/com.multiple.data.source.database.convert.RedisValueCodec 扩展
+ */
+public interface RedisValueCodec {
+
+    /**
+     * 文本JSON，与字符串操作兼容
+     */
+    String JSON = "json";
+
+    /**
+     * 二进制JSON（Jackson Smile），需要jackson-dataformat-smile
+     */
+    String SMILE = "smile";
+
+    /**
+     * 按类生成schema的二进制编码（Jackson Avro），需要jackson-dataformat-avro
+     */
+    String AVRO = "avro";
+
+    /**
+     * 编解码名称，配置时使用
+     */
+    String getName();
+
+    byte[] encode(Object value) throws IOException;
+
+    <T> T decode(byte[] bytes, Class<T> type) throws IOException;
+}
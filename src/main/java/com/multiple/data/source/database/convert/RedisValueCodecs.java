@@ -0,0 +1,100 @@
+package com.multiple.data.source.database.convert;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编解码注册
+ * 内置json（默认）、smile、avro，smile和avro在第一次使用时创建，类路径下缺少对应的jackson-dataformat时抛出异常；
+ * 通过ServiceLoader发现的编解码在第一次访问时注册
+ */
+public final class RedisValueCodecs {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisValueCodecs.class);
+
+    private static final RedisValueCodec JSON_CODEC = new JacksonRedisValueCodec(RedisValueCodec.JSON, RedisJsonCodec.DEFAULT, true);
+
+    /**
+     * key: 编解码名称
+     */
+    private static final Map<String, RedisValueCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        CODECS.put(RedisValueCodec.JSON, JSON_CODEC);
+        try {
+            for (RedisValueCodec codec : ServiceLoader.load(RedisValueCodec.class)) {
+                CODECS.put(codec.getName(), codec);
+            }
+        } catch (ServiceConfigurationError e) {
+            LOGGER.warn("load redis value codec failed: {}", e.getMessage());
+        }
+    }
+
+    private RedisValueCodecs() {
+    }
+
+    /**
+     * 默认的json编解码
+     */
+    public static RedisValueCodec json() {
+        return JSON_CODEC;
+    }
+
+    /**
+     * 按名称获取编解码
+     *
+     * @param name 编解码名称，为空时返回json
+     */
+    public static RedisValueCodec get(String name) {
+        if (StringUtils.isEmpty(name)) {
+            return JSON_CODEC;
+        }
+        return CODECS.computeIfAbsent(name, RedisValueCodecs::create);
+    }
+
+    /**
+     * 注册编解码，同名的会被覆盖
+     */
+    public static void register(RedisValueCodec codec) {
+        CODECS.put(codec.getName(), codec);
+    }
+
+    private static RedisValueCodec create(String name) {
+        switch (name) {
+            case RedisValueCodec.SMILE:
+                checkPresent("com.fasterxml.jackson.dataformat.smile.SmileFactory", "jackson-dataformat-smile");
+                return SmileCodecFactory.create();
+            case RedisValueCodec.AVRO:
+                checkPresent("com.fasterxml.jackson.dataformat.avro.AvroMapper", "jackson-dataformat-avro");
+                return new AvroRedisValueCodec();
+            default:
+                throw new IllegalArgumentException("unknown redis value codec: " + name);
+        }
+    }
+
+    private static void checkPresent(String className, String artifactId) {
+        if (!ClassUtils.isPresent(className, RedisValueCodecs.class.getClassLoader())) {
+            throw new IllegalStateException("redis value codec needs " + artifactId + " in classpath.");
+        }
+    }
+
+    /**
+     * 单独的类引用SmileFactory，类路径下没有jackson-dataformat-smile时不影响RedisValueCodecs加载
+     */
+    private static final class SmileCodecFactory {
+
+        private static RedisValueCodec create() {
+            ObjectMapper objectMapper = RedisJsonCodec.createObjectMapper(new ObjectMapper(new SmileFactory()));
+            return new JacksonRedisValueCodec(RedisValueCodec.SMILE, new RedisJsonCodec(objectMapper), false);
+        }
+    }
+}
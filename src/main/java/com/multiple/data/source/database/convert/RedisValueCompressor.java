@@ -0,0 +1,314 @@
+package com.multiple.data.source.database.convert;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 值压缩
+ * 序列化后达到minSize的值使用JDK Deflater压缩，压缩后的值以 {@link #MAGIC} 开头，后面4个字节是原始长度；
+ * 读取时根据头部判断是否需要解压，开启压缩之前写入的值、小于minSize的值原样读取，新旧数据可以混用。
+ * 压缩后没有变小的值原样写入。
+ * <p>
+ * 按key前缀（第一个':'之前的部分）统计压缩情况，用于调整minSize，前缀数量超过 {@link #MAX_PREFIXES} 后归入 {@link #OTHER_PREFIX}
+ */
+public class RedisValueCompressor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisValueCompressor.class);
+
+    /**
+     * 默认的最小压缩长度，单位：字节
+     */
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    /**
+     * 统计的前缀数量上限
+     */
+    public static final int MAX_PREFIXES = 256;
+
+    /**
+     * 超过前缀数量上限后统计到该前缀
+     */
+    public static final String OTHER_PREFIX = "*";
+
+    /**
+     * 压缩值的头部，0xFF不是合法的UTF-8首字节，文本和JSON不会以它开头
+     */
+    private static final byte[] MAGIC = {(byte) 0xFF, 'R', 'Z', 1};
+
+    private static final int HEADER_LENGTH = MAGIC.length + 4;
+
+    /**
+     * 原始长度上限，与redis字符串的最大长度一致，头部解析出的长度超过时认为不是压缩值
+     */
+    private static final int MAX_ORIGINAL_LENGTH = 512 * 1024 * 1024;
+
+    private final int minSize;
+
+    private final int level;
+
+    /**
+     * key: key前缀
+     */
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public RedisValueCompressor() {
+        this(DEFAULT_MIN_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param minSize 最小压缩长度，单位：字节
+     * @param level   Deflater压缩级别，0-9，-1表示默认级别
+     */
+    public RedisValueCompressor(int minSize, int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("invalid deflater level: " + level);
+        }
+        this.minSize = Math.max(minSize, 0);
+        this.level = level;
+    }
+
+    /**
+     * 压缩，小于minSize或压缩后没有变小时返回原值
+     *
+     * @param key   key，用于按前缀统计
+     * @param value 序列化后的值
+     */
+    public byte[] compress(String key, byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        Stats prefixStats = getStats(key);
+        if (value.length < minSize || value.length <= HEADER_LENGTH) {
+            prefixStats.skipped.increment();
+            return value;
+        }
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(value);
+            deflater.finish();
+            // 输出不超过原值长度，写满仍未完成说明压缩后没有变小
+            byte[] buffer = new byte[value.length];
+            System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+            writeInt(buffer, MAGIC.length, value.length);
+            int length = HEADER_LENGTH;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished()) {
+                prefixStats.incompressible.increment();
+                return value;
+            }
+            prefixStats.compressed.increment();
+            prefixStats.originalBytes.add(value.length);
+            prefixStats.compressedBytes.add(length);
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解压，不是压缩值（没有头部、或头部之后的数据无法解压）时返回原值
+     */
+    public byte[] decompress(byte[] value) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+        int originalLength = readInt(value, MAGIC.length);
+        if (originalLength < 0 || originalLength > MAX_ORIGINAL_LENGTH) {
+            return value;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, HEADER_LENGTH, value.length - HEADER_LENGTH);
+            byte[] result = new byte[originalLength];
+            int length = 0;
+            while (!inflater.finished() && length < originalLength) {
+                int count = inflater.inflate(result, length, originalLength - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += count;
+            }
+            if (!inflater.finished() || length != originalLength) {
+                LOGGER.warn("redis value has compression header but is not a valid compressed value, read as raw.");
+                return value;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            LOGGER.warn("redis value has compression header but is not a valid compressed value, read as raw.");
+            return value;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 以流的方式解压，流不以压缩头部开头时原样读取
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, HEADER_LENGTH);
+        byte[] header = new byte[HEADER_LENGTH];
+        int length = 0;
+        while (length < HEADER_LENGTH) {
+            int count = pushback.read(header, length, HEADER_LENGTH - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        if (isCompressed(header) && length == HEADER_LENGTH) {
+            return new InflaterInputStream(pushback);
+        }
+        pushback.unread(header, 0, length);
+        return pushback;
+    }
+
+    /**
+     * 是否以压缩头部开头
+     */
+    public static boolean isCompressed(byte[] value) {
+        if (value == null || value.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (value[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 按key前缀统计的压缩情况快照，key: key前缀
+     */
+    public Map<String, Stats> getStats() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stats));
+    }
+
+    /**
+     * 清空统计
+     */
+    public void resetStats() {
+        stats.clear();
+    }
+
+    private Stats getStats(String key) {
+        String prefix = prefix(key);
+        Stats prefixStats = stats.get(prefix);
+        if (prefixStats == null) {
+            if (stats.size() >= MAX_PREFIXES) {
+                prefix = OTHER_PREFIX;
+            }
+            prefixStats = stats.computeIfAbsent(prefix, name -> new Stats());
+        }
+        return prefixStats;
+    }
+
+    private static String prefix(String key) {
+        if (key == null) {
+            return OTHER_PREFIX;
+        }
+        int index = key.indexOf(':');
+        return index < 0 ? key : key.substring(0, index);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16
+                | (buffer[offset + 2] & 0xFF) << 8 | buffer[offset + 3] & 0xFF;
+    }
+
+    /**
+     * 一个key前缀的压缩统计
+     */
+    public static final class Stats {
+
+        private final LongAdder compressed = new LongAdder();
+
+        private final LongAdder skipped = new LongAdder();
+
+        private final LongAdder incompressible = new LongAdder();
+
+        private final LongAdder originalBytes = new LongAdder();
+
+        private final LongAdder compressedBytes = new LongAdder();
+
+        /**
+         * 压缩写入的次数
+         */
+        public long getCompressed() {
+            return compressed.sum();
+        }
+
+        /**
+         * 小于minSize没有压缩的次数
+         */
+        public long getSkipped() {
+            return skipped.sum();
+        }
+
+        /**
+         * 压缩后没有变小、原样写入的次数
+         */
+        public long getIncompressible() {
+            return incompressible.sum();
+        }
+
+        /**
+         * 压缩写入的值压缩前的总字节数
+         */
+        public long getOriginalBytes() {
+            return originalBytes.sum();
+        }
+
+        /**
+         * 压缩写入的值压缩后的总字节数（含头部）
+         */
+        public long getCompressedBytes() {
+            return compressedBytes.sum();
+        }
+
+        /**
+         * 压缩率：压缩后字节数/压缩前字节数，没有压缩过时为1
+         */
+        public double getRatio() {
+            long original = getOriginalBytes();
+            return original == 0 ? 1.0 : (double) getCompressedBytes() / original;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("compressed=%d, skipped=%d, incompressible=%d, ratio=%.3f",
+                    getCompressed(), getSkipped(), getIncompressible(), getRatio());
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.multiple.data.source.database.helper;
+
+import com.multiple.data.source.database.config.DatabaseSelectingConnectionFactory;
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import com.multiple.data.source.database.options.ManagedRedisTemplate;
+import org.springframework.data.redis.connection.DefaultStringRedisConnection;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Redis批量操作基类，记录命令，执行时在同一个连接上以pipeline的方式发送，命令过多时按chunkSize分多次pipeline发送。
+ * 每条命令记录其所在的db，与连接当前所在的db不同时在pipeline中插入SELECT，执行完成后切换回连接的默认db，
+ * 使客户端记录的db与连接实际所在的db一致（lettuce归还连接时不会再切换）。
+ * <p>
+ * 返回值与命令一一对应，没有返回值的命令（例如hashPutAll）对应null。
+ * db开启了值压缩时strGet、strMultiGet以字节读取后解压；写入的值不压缩，读取时原样返回。
+ * 集群模式下连接不支持pipeline，命令逐条执行。
+ * 该对象不是线程安全的，只在一个线程中构建和执行
+ *
+ * @param <B> 具体的批量操作类型，用于链式调用
+ */
+public abstract class AbstractRedisBatch<B extends AbstractRedisBatch<B>> {
+
+    /**
+     * 默认每次pipeline发送的命令数
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * 命令不切换db，在连接当前所在的db执行
+     */
+    protected static final int CURRENT_DATABASE = -1;
+
+    /**
+     * 已记录的命令
+     */
+    private final List<Command> commands = new ArrayList<>();
+
+    /**
+     * 每次pipeline发送的命令数
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * 之后记录的命令所在的db
+     */
+    private int database = CURRENT_DATABASE;
+
+    /**
+     * 执行命令使用的redisTemplate
+     */
+    protected abstract RedisTemplate<String, String> getRedisTemplate();
+
+    /**
+     * 连接借出时所在的db，执行完成后切换回该db，不切换db时为 {@link #CURRENT_DATABASE}
+     */
+    protected int getDefaultDatabase() {
+        return CURRENT_DATABASE;
+    }
+
+    /**
+     * 指定db的值压缩器，默认为redisTemplate所在数据源、db配置的压缩器
+     *
+     * @param database 命令所在的db，不切换db时为 {@link #CURRENT_DATABASE}
+     * @return 为空表示不压缩
+     */
+    protected RedisValueCompressor getCompressor(int database) {
+        RedisTemplate<String, String> redisTemplate = getRedisTemplate();
+        return redisTemplate instanceof ManagedRedisTemplate
+                ? ((ManagedRedisTemplate<?, ?>) redisTemplate).getCompressor() : null;
+    }
+
+    /**
+     * 命令的执行顺序，返回值为命令的下标，默认按记录的顺序执行
+     */
+    protected List<Integer> executionOrder(List<Command> commands) {
+        List<Integer> order = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            order.add(i);
+        }
+        return order;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected final B self() {
+        return (B) this;
+    }
+
+    /**
+     * 设置之后记录的命令所在的db
+     */
+    protected void setDatabase(int database) {
+        this.database = database;
+    }
+
+    /**
+     * 设置每次pipeline发送的命令数
+     *
+     * @param chunkSize 命令数，必须大于0
+     */
+    public B chunkSize(int chunkSize) {
+        Assert.isTrue(chunkSize > 0, "chunkSize must be positive.");
+        this.chunkSize = chunkSize;
+        return self();
+    }
+
+    /**
+     * 删除key
+     */
+    public B delKey(String key) {
+        return add(connection -> connection.del(key), true);
+    }
+
+    /**
+     * 删除key（UNLINK），在redis后台线程释放内存，不阻塞其他命令
+     */
+    public B unlinkKeys(String... keys) {
+        return add(connection -> connection.unlink(keys), true);
+    }
+
+    /**
+     * 设置过期时间
+     */
+    public B setExpire(String key, long expire, TimeUnit timeUnit) {
+        return add(connection -> connection.pExpire(key, toMillis(expire, timeUnit)), true);
+    }
+
+    /**
+     * 剩余过期时间（PTTL，毫秒），key不存在时为-2，没有设置过期时间时为-1
+     */
+    public B pTtl(String key) {
+        return add(connection -> connection.pTtl(key), true);
+    }
+
+    /**
+     * String 设置值
+     */
+    public B strSet(String key, String value) {
+        RedisValueCompressor compressor = getCompressor(database);
+        if (compressor == null) {
+            return add(connection -> connection.set(key, value), true);
+        }
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = RedisOperationHelper.compress(compressor, key, value);
+        return add(connection -> connection.set(rawKey, rawValue), true);
+    }
+
+    /**
+     * String 设置值并设置过期时间
+     */
+    public B strSet(String key, String value, long expire, TimeUnit timeUnit) {
+        if (expire == RedisOperationHelper.NOT_EXPIRE) {
+            return strSet(key, value);
+        }
+        RedisValueCompressor compressor = getCompressor(database);
+        if (compressor == null) {
+            return add(connection -> connection.pSetEx(key, toMillis(expire, timeUnit), value), true);
+        }
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = RedisOperationHelper.compress(compressor, key, value);
+        return add(connection -> connection.pSetEx(rawKey, toMillis(expire, timeUnit), rawValue), true);
+    }
+
+    /**
+     * String 获取值
+     */
+    public B strGet(String key) {
+        RedisValueCompressor compressor = getCompressor(database);
+        if (compressor == null) {
+            return add(connection -> connection.get(key), true);
+        }
+        // 压缩的值转换为String后无法还原，以字节读取后解压
+        byte[] rawKey = rawKey(key);
+        return add(connection -> connection.get(rawKey), true,
+                value -> RedisOperationHelper.decompress(compressor, (byte[]) value));
+    }
+
+    /**
+     * String 批量获取值（MGET），返回值为与keys顺序一致的List
+     */
+    public B strMultiGet(Collection<String> keys) {
+        RedisValueCompressor compressor = getCompressor(database);
+        if (compressor == null) {
+            return add(connection -> connection.mGet(keys.toArray(new String[0])), true);
+        }
+        byte[][] rawKeys = keys.stream().map(AbstractRedisBatch::rawKey).toArray(byte[][]::new);
+        return add(connection -> connection.mGet(rawKeys), true, values -> {
+            List<String> result = new ArrayList<>(rawKeys.length);
+            for (Object value : (List<?>) values) {
+                result.add(RedisOperationHelper.decompress(compressor, (byte[]) value));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * String 批量设置值（MSET）
+     */
+    public B strMultiSet(Map<String, String> map) {
+        RedisValueCompressor compressor = getCompressor(database);
+        if (compressor == null) {
+            return add(connection -> connection.mSetString(map), true);
+        }
+        Map<byte[], byte[]> values = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((key, value) -> values.put(rawKey(key), RedisOperationHelper.compress(compressor, key, value)));
+        return add(connection -> connection.mSet(values), true);
+    }
+
+    /**
+     * String 自增
+     */
+    public B strIncrement(String key, long delta) {
+        return add(connection -> connection.incrBy(key, delta), true);
+    }
+
+    /**
+     * List 从左边插入
+     */
+    public B listLeftPush(String key, String value) {
+        return add(connection -> connection.lPush(key, value), true);
+    }
+
+    /**
+     * List 从左边批量插入
+     */
+    public B listLeftPushAll(String key, Collection<String> values) {
+        return add(connection -> connection.lPush(key, values.toArray(new String[0])), true);
+    }
+
+    /**
+     * List 从右边插入
+     */
+    public B listRightPush(String key, String value) {
+        return add(connection -> connection.rPush(key, value), true);
+    }
+
+    /**
+     * List 从右边批量插入
+     */
+    public B listRightPushAll(String key, Collection<String> values) {
+        return add(connection -> connection.rPush(key, values.toArray(new String[0])), true);
+    }
+
+    /**
+     * Set 添加元素
+     */
+    public B setAdd(String key, String... values) {
+        return add(connection -> connection.sAdd(key, values), true);
+    }
+
+    /**
+     * Set 移除元素
+     */
+    public B setRemove(String key, String... values) {
+        return add(connection -> connection.sRem(key, values), true);
+    }
+
+    /**
+     * ZSet 添加元素
+     */
+    public B zSetAdd(String key, String value, double score) {
+        return add(connection -> connection.zAdd(key, score, value), true);
+    }
+
+    /**
+     * ZSet 增加元素的分数
+     */
+    public B zSetIncrementScore(String key, String value, double delta) {
+        return add(connection -> connection.zIncrBy(key, delta, value), true);
+    }
+
+    /**
+     * ZSet 移除元素
+     */
+    public B zSetRemove(String key, String... values) {
+        return add(connection -> connection.zRem(key, values), true);
+    }
+
+    /**
+     * Hash 设置值
+     */
+    public B hashPut(String key, String hashKey, String value) {
+        return add(connection -> connection.hSet(key, hashKey, value), true);
+    }
+
+    /**
+     * Hash 批量设置值，没有返回值
+     */
+    public B hashPutAll(String key, Map<String, String> map) {
+        return add(connection -> {
+            connection.hMSet(key, map);
+            return null;
+        }, false);
+    }
+
+    /**
+     * Hash 批量设置值并设置过期时间，对应两条命令（没有返回值的hMSet和返回是否成功的pExpire）
+     */
+    public B hashPutAll(String key, Map<String, String> map, long expire, TimeUnit timeUnit) {
+        hashPutAll(key, map);
+        return setExpire(key, expire, timeUnit);
+    }
+
+    /**
+     * Hash 获取值
+     */
+    public B hashGet(String key, String hashKey) {
+        return add(connection -> connection.hGet(key, hashKey), true);
+    }
+
+    /**
+     * Hash 获取所有键值对
+     */
+    public B hashGetAll(String key) {
+        return add(connection -> connection.hGetAll(key), true);
+    }
+
+    /**
+     * Hash 删除
+     */
+    public B hashDelete(String key, String... hashKeys) {
+        return add(connection -> connection.hDel(key, hashKeys), true);
+    }
+
+    /**
+     * 已记录的命令数
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * 在同一个连接上按chunkSize分批以pipeline的方式执行所有命令
+     *
+     * @return 与命令一一对应的返回值
+     */
+    public RedisBatchResult execute() {
+        if (commands.isEmpty()) {
+            return new RedisBatchResult(Collections.emptyList());
+        }
+        List<Command> pending = new ArrayList<>(commands);
+        commands.clear();
+        List<Integer> order = executionOrder(pending);
+        int defaultDatabase = getDefaultDatabase();
+        Object[] results = new Object[pending.size()];
+        getRedisTemplate().execute((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = toStringConnection(connection);
+            if (connection instanceof RedisClusterConnection) {
+                // 集群连接不支持pipeline，逐条执行
+                order.forEach(index -> {
+                    Command command = pending.get(index);
+                    results[index] = command.decode(command.action.apply(stringConnection));
+                });
+                return null;
+            }
+            if (defaultDatabase == CURRENT_DATABASE) {
+                for (int from = 0; from < order.size(); from += chunkSize) {
+                    List<Integer> chunk = order.subList(from, Math.min(from + chunkSize, order.size()));
+                    executePipelined(stringConnection, pending, chunk, results, CURRENT_DATABASE, CURRENT_DATABASE);
+                }
+                return null;
+            }
+            // 共享连接工厂的连接可能停留在其他db，从记录的db开始切换，执行失败时连接所在的db无法确定
+            int current = DatabaseSelectingConnectionFactory.getSelectedDatabase(connection, defaultDatabase);
+            DatabaseSelectingConnectionFactory.setSelectedDatabase(connection,
+                    DatabaseSelectingConnectionFactory.UNKNOWN_DATABASE, defaultDatabase);
+            for (int from = 0; from < order.size(); from += chunkSize) {
+                List<Integer> chunk = order.subList(from, Math.min(from + chunkSize, order.size()));
+                boolean last = from + chunkSize >= order.size();
+                current = executePipelined(stringConnection, pending, chunk, results, current,
+                        last ? defaultDatabase : CURRENT_DATABASE);
+            }
+            DatabaseSelectingConnectionFactory.setSelectedDatabase(connection, current, defaultDatabase);
+            return null;
+        });
+        return new RedisBatchResult(Arrays.asList(results));
+    }
+
+    /**
+     * 以pipeline的方式执行一批命令，并把pipeline的返回值对应到每条命令上
+     *
+     * @param current         连接当前所在的db
+     * @param restoreDatabase pipeline最后要切换回的db，不切换时为 {@link #CURRENT_DATABASE}
+     * @return 执行完成后连接所在的db
+     */
+    private static int executePipelined(StringRedisConnection connection, List<Command> commands, List<Integer> chunk,
+                                        Object[] results, int current, int restoreDatabase) {
+        connection.openPipeline();
+        List<Object> raw;
+        try {
+            for (Integer index : chunk) {
+                Command command = commands.get(index);
+                // SELECT没有返回值，不影响返回值与命令的对应
+                if (command.database != CURRENT_DATABASE && command.database != current) {
+                    connection.select(command.database);
+                    current = command.database;
+                }
+                command.action.apply(connection);
+            }
+            if (restoreDatabase != CURRENT_DATABASE && current != restoreDatabase) {
+                connection.select(restoreDatabase);
+                current = restoreDatabase;
+            }
+        } finally {
+            raw = connection.closePipeline();
+        }
+        // pipeline不返回没有返回值的命令的结果
+        long expected = chunk.stream().filter(index -> commands.get(index).hasResult).count();
+        if (raw == null || raw.size() != expected) {
+            throw new IllegalStateException(String.format("redis pipeline returned %d results, expected %d.",
+                    raw == null ? 0 : raw.size(), expected));
+        }
+        int position = 0;
+        for (Integer index : chunk) {
+            Command command = commands.get(index);
+            results[index] = command.hasResult ? command.decode(raw.get(position++)) : null;
+        }
+        return current;
+    }
+
+    /**
+     * 包装为以String读写的连接，pipeline的返回值也转换为String
+     */
+    private static StringRedisConnection toStringConnection(RedisConnection connection) {
+        // StringRedisTemplate传入的连接默认不转换pipeline的返回值，这里总是重新包装一层
+        DefaultStringRedisConnection stringConnection = new DefaultStringRedisConnection(connection);
+        stringConnection.setDeserializePipelineAndTxResults(true);
+        return stringConnection;
+    }
+
+    private static long toMillis(long expire, TimeUnit timeUnit) {
+        return (timeUnit == null ? TimeUnit.SECONDS : timeUnit).toMillis(expire);
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private B add(Function<StringRedisConnection, Object> action, boolean hasResult) {
+        return add(action, hasResult, null);
+    }
+
+    private B add(Function<StringRedisConnection, Object> action, boolean hasResult, Function<Object, Object> decoder) {
+        commands.add(new Command(action, hasResult, database, decoder));
+        return self();
+    }
+
+    /**
+     * 记录的命令
+     */
+    protected static final class Command {
+
+        private final Function<StringRedisConnection, Object> action;
+
+        /**
+         * 命令是否有返回值，没有返回值的命令pipeline不返回结果
+         */
+        private final boolean hasResult;
+
+        /**
+         * 命令所在的db
+         */
+        private final int database;
+
+        /**
+         * 返回值的转换，为空表示原样返回
+         */
+        private final Function<Object, Object> decoder;
+
+        private Command(Function<StringRedisConnection, Object> action, boolean hasResult, int database,
+                        Function<Object, Object> decoder) {
+            this.action = action;
+            this.hasResult = hasResult;
+            this.database = database;
+            this.decoder = decoder;
+        }
+
+        private Object decode(Object value) {
+            return decoder == null ? value : decoder.apply(value);
+        }
+
+        public int getDatabase() {
+            return database;
+        }
+    }
+}
@@ -0,0 +1,649 @@
+package com.multiple.data.source.database.helper;
+
+import com.multiple.data.source.database.config.RedisShutdownCoordinator;
+import com.multiple.data.source.database.convert.RedisValueCodec;
+import com.multiple.data.source.database.convert.RedisValueCodecs;
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import com.multiple.data.source.database.options.ManagedRedisTemplate;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.multiple.data.source.database.helper.RedisOperationHelper.DEFAULT_EXPIRE;
+import static com.multiple.data.source.database.helper.RedisOperationHelper.MULTI_KEY_CHUNK_SIZE;
+import static com.multiple.data.source.database.helper.RedisOperationHelper.NOT_EXPIRE;
+
+/**
+ * 异步的RedisOperationHelper，方法与 {@link RedisOperationHelper} 对应，返回CompletableFuture
+ * 使用redisTemplate的lettuce连接工厂共享的本地连接发送异步命令，不占用调用线程等待网络往返，多个互不依赖的读取可以同时进行：
+ * <pre>
+ * AsyncRedisOperationHelper db1 = new AsyncRedisOperationHelper(redisHelper.opsDbOne());
+ * AsyncRedisOperationHelper db2 = new AsyncRedisOperationHelper(redisHelper.opsDbTwo());
+ * CompletableFuture&lt;String&gt; a = db1.strGet("k1");
+ * CompletableFuture&lt;User&gt; b = db2.strGet("k2", User.class);
+ * CompletableFuture.allOf(a, b).join();
+ * </pre>
+ * 同时执行的命令数量不超过maxInFlight，达到上限时调用线程最多等待acquireTimeout，仍然没有空闲时返回以RejectedExecutionException失败的future；
+ * 在lettuce的IO线程上（例如future回调中）调用时不等待，达到上限立即失败。
+ * 对象值的编解码、值压缩与RedisOperationHelper一致；不经过近端缓存，写入后不会失效近端缓存。
+ * 开启了RedisTemplate缓存淘汰（stone.redis.template-cache）时，长期持有的实例在其redisTemplate被淘汰后会使用已销毁的连接池，
+ * 只能长期持有默认db（不会被淘汰）的实例，其他db在使用时创建。
+ * <p>
+ * 注意：future在lettuce的IO线程上完成，thenApply等回调中不能执行阻塞操作，需要阻塞时使用thenApplyAsync等方法指定线程池
+ */
+public class AsyncRedisOperationHelper {
+
+    /**
+     * 默认的最大同时执行的命令数量
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final LettuceConnectionFactory connectionFactory;
+
+    private final int maxInFlight;
+
+    private final Semaphore permits;
+
+    /**
+     * 达到maxInFlight时调用线程的最长等待时长，netty的IO线程上不等待
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(1);
+
+    public AsyncRedisOperationHelper(RedisTemplate<String, String> redisTemplate) {
+        this(redisTemplate, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param redisTemplate 由lettuce连接工厂创建的redisTemplate，例如 {@link RedisHelper#opsDbOne()}
+     * @param maxInFlight   最大同时执行的命令数量
+     */
+    public AsyncRedisOperationHelper(RedisTemplate<String, String> redisTemplate, int maxInFlight) {
+        Assert.notNull(redisTemplate, "redisTemplate must not be null.");
+        Assert.isTrue(maxInFlight > 0, "maxInFlight must be greater than 0.");
+        RedisConnectionFactory factory = redisTemplate.getConnectionFactory();
+        if (!(factory instanceof LettuceConnectionFactory)) {
+            throw new IllegalArgumentException("async redis operations need a redisTemplate created by lettuce connection factory.");
+        }
+        if (!((LettuceConnectionFactory) factory).getShareNativeConnection()) {
+            // 独占连接归还连接池后可能被其他线程借出（例如切换db），不能用于异步命令
+            throw new IllegalArgumentException("async redis operations need a lettuce connection factory sharing native connection.");
+        }
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = (LettuceConnectionFactory) factory;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    public void setAcquireTimeout(Duration acquireTimeout) {
+        this.acquireTimeout = acquireTimeout == null ? Duration.ZERO : acquireTimeout;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * 当前正在执行的命令数量
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public RedisTemplate<String, String> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    // =======================================key===================================
+
+    public CompletableFuture<Void> delKey(String key) {
+        return execute(commands -> commands.del(raw(key))).thenApply(count -> null);
+    }
+
+    public CompletableFuture<Void> delKeys(Collection<String> keys) {
+        return allOf(chunk(keys), chunk -> execute(commands -> commands.del(raw(chunk)))).thenApply(counts -> null);
+    }
+
+    public CompletableFuture<Boolean> unlinkKey(String key) {
+        return execute(commands -> commands.unlink(raw(key))).thenApply(count -> count != null && count > 0);
+    }
+
+    public CompletableFuture<Long> unlinkKeys(Collection<String> keys) {
+        return allOf(chunk(keys), chunk -> execute(commands -> commands.unlink(raw(chunk))))
+                .thenApply(counts -> counts.stream().mapToLong(count -> count == null ? 0 : count).sum());
+    }
+
+    public CompletableFuture<Boolean> hasKey(String key) {
+        return execute(commands -> commands.exists(raw(key))).thenApply(count -> count != null && count > 0);
+    }
+
+    /**
+     * 获取过期时间，单位：秒
+     */
+    public CompletableFuture<Long> getExpire(String key) {
+        return getExpire(key, TimeUnit.SECONDS);
+    }
+
+    public CompletableFuture<Long> getExpire(String key, TimeUnit timeUnit) {
+        return execute(commands -> commands.pttl(raw(key)))
+                .thenApply(millis -> millis == null || millis < 0 ? millis : Long.valueOf(timeUnit.convert(millis, TimeUnit.MILLISECONDS)));
+    }
+
+    public CompletableFuture<Boolean> setExpire(String key) {
+        return setExpire(key, DEFAULT_EXPIRE, TimeUnit.SECONDS);
+    }
+
+    public CompletableFuture<Boolean> setExpire(String key, long expire) {
+        return setExpire(key, expire, TimeUnit.SECONDS);
+    }
+
+    public CompletableFuture<Boolean> setExpire(String key, long expire, TimeUnit timeUnit) {
+        return execute(commands -> commands.pexpire(raw(key), toMillis(expire, timeUnit)));
+    }
+
+    // =======================================string===================================
+
+    public CompletableFuture<Void> strSet(String key, String value) {
+        return setRaw(key, compress(key, value), NOT_EXPIRE, null);
+    }
+
+    public CompletableFuture<Void> strSet(String key, String value, long expire, TimeUnit timeUnit) {
+        return setRaw(key, compress(key, value), expire, timeUnit);
+    }
+
+    public CompletableFuture<String> strGet(String key) {
+        return getRaw(key, NOT_EXPIRE, null).thenApply(this::decompress);
+    }
+
+    public CompletableFuture<String> strGet(String key, long expire, TimeUnit timeUnit) {
+        return getRaw(key, expire, timeUnit).thenApply(this::decompress);
+    }
+
+    public <T> CompletableFuture<T> strGet(String key, Class<T> clazz) {
+        return strGet(key, clazz, NOT_EXPIRE, null);
+    }
+
+    public <T> CompletableFuture<T> strGet(String key, Class<T> clazz, long expire, TimeUnit timeUnit) {
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        return getRaw(key, expire, timeUnit).thenApply(value -> RedisOperationHelper.decodeValue(codec, compressor, value, clazz));
+    }
+
+    public CompletableFuture<List<String>> strMultiGet(Collection<String> keys) {
+        return multiGetRaw(keys).thenApply(values -> {
+            List<String> result = new ArrayList<>(values.size());
+            values.forEach(value -> result.add(decompress(value)));
+            return result;
+        });
+    }
+
+    public <T> CompletableFuture<List<T>> strMultiGet(Collection<String> keys, Class<T> clazz) {
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        return multiGetRaw(keys).thenApply(values -> {
+            List<T> result = new ArrayList<>(values.size());
+            values.forEach(value -> result.add(RedisOperationHelper.decodeValue(codec, compressor, value, clazz)));
+            return result;
+        });
+    }
+
+    public CompletableFuture<Void> strMultiSet(Map<String, String> map) {
+        return strMultiSet(map, NOT_EXPIRE, TimeUnit.SECONDS);
+    }
+
+    public CompletableFuture<Void> strMultiSet(Map<String, String> map, long expire, TimeUnit timeUnit) {
+        Map<String, byte[]> values = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((key, value) -> values.put(key, compress(key, value)));
+        return multiSetRaw(values, expire, timeUnit);
+    }
+
+    public <T> CompletableFuture<Void> objectSet(String key, T object) {
+        return setRaw(key, RedisOperationHelper.encodeValue(getValueCodec(), getCompressor(), key, object), NOT_EXPIRE, null);
+    }
+
+    public <T> CompletableFuture<Void> objectMultiSet(Map<String, T> map, long expire, TimeUnit timeUnit) {
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        Map<String, byte[]> values = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((key, object) -> values.put(key, RedisOperationHelper.encodeValue(codec, compressor, key, object)));
+        return multiSetRaw(values, expire, timeUnit);
+    }
+
+    public CompletableFuture<Boolean> strSetIfAbsent(String key, String value) {
+        return execute(commands -> commands.setnx(raw(key), raw(value)));
+    }
+
+    public CompletableFuture<Long> strIncrement(String key, Long delta) {
+        return execute(commands -> commands.incrby(raw(key), delta));
+    }
+
+    // =======================================list===================================
+
+    public CompletableFuture<Long> listLeftPush(String key, String value) {
+        return execute(commands -> commands.lpush(raw(key), raw(value)));
+    }
+
+    public CompletableFuture<Long> listLeftPushAll(String key, Collection<String> values) {
+        return execute(commands -> commands.lpush(raw(key), raw(values)));
+    }
+
+    public CompletableFuture<Long> listRightPush(String key, String value) {
+        return execute(commands -> commands.rpush(raw(key), raw(value)));
+    }
+
+    public CompletableFuture<Long> listRightPushAll(String key, Collection<String> values) {
+        return execute(commands -> commands.rpush(raw(key), raw(values)));
+    }
+
+    public CompletableFuture<List<String>> listRange(String key, long start, long end) {
+        return execute(commands -> commands.lrange(raw(key), start, end)).thenApply(AsyncRedisOperationHelper::toList);
+    }
+
+    public CompletableFuture<List<String>> listAll(String key) {
+        return listRange(key, 0, -1);
+    }
+
+    public CompletableFuture<String> listLeftPop(String key) {
+        return execute(commands -> commands.lpop(raw(key))).thenApply(AsyncRedisOperationHelper::str);
+    }
+
+    public CompletableFuture<String> listRightPop(String key) {
+        return execute(commands -> commands.rpop(raw(key))).thenApply(AsyncRedisOperationHelper::str);
+    }
+
+    public CompletableFuture<Long> listLen(String key) {
+        return execute(commands -> commands.llen(raw(key)));
+    }
+
+    public CompletableFuture<String> listIndex(String key, long index) {
+        return execute(commands -> commands.lindex(raw(key), index)).thenApply(AsyncRedisOperationHelper::str);
+    }
+
+    // =======================================set===================================
+
+    public CompletableFuture<Long> setAdd(String key, String[] values) {
+        return execute(commands -> commands.sadd(raw(key), raw(Arrays.asList(values))));
+    }
+
+    public CompletableFuture<Set<String>> setMembers(String key) {
+        return execute(commands -> commands.smembers(raw(key))).thenApply(AsyncRedisOperationHelper::toSet);
+    }
+
+    public CompletableFuture<Boolean> setIsMember(String key, String o) {
+        return execute(commands -> commands.sismember(raw(key), raw(o)));
+    }
+
+    public CompletableFuture<Long> setSize(String key) {
+        return execute(commands -> commands.scard(raw(key)));
+    }
+
+    public CompletableFuture<Long> setRemove(String key, Object[] value) {
+        byte[][] members = Arrays.stream(value).map(member -> raw(String.valueOf(member))).toArray(byte[][]::new);
+        return execute(commands -> commands.srem(raw(key), members));
+    }
+
+    // =======================================zset===================================
+
+    public CompletableFuture<Boolean> zSetAdd(String key, String value, double score) {
+        return execute(commands -> commands.zadd(raw(key), score, raw(value))).thenApply(count -> count != null && count > 0);
+    }
+
+    public CompletableFuture<Double> zSetScore(String key, String value) {
+        return execute(commands -> commands.zscore(raw(key), raw(value)));
+    }
+
+    public CompletableFuture<Double> zSetIncrementScore(String key, String value, double delta) {
+        return execute(commands -> commands.zincrby(raw(key), delta, raw(value)));
+    }
+
+    public CompletableFuture<Long> zSetRank(String key, String value) {
+        return execute(commands -> commands.zrank(raw(key), raw(value)));
+    }
+
+    public CompletableFuture<Long> zSetReverseRank(String key, String value) {
+        return execute(commands -> commands.zrevrank(raw(key), raw(value)));
+    }
+
+    public CompletableFuture<Long> zSetSize(String key) {
+        return execute(commands -> commands.zcard(raw(key)));
+    }
+
+    public CompletableFuture<Long> zSetRemove(String key, String value) {
+        return execute(commands -> commands.zrem(raw(key), raw(value)));
+    }
+
+    public CompletableFuture<Set<String>> zSetRange(String key, Long start, Long end) {
+        return execute(commands -> commands.zrange(raw(key), start, end)).thenApply(AsyncRedisOperationHelper::toSet);
+    }
+
+    public CompletableFuture<Set<String>> zSetReverseRange(String key, Long start, Long end) {
+        return execute(commands -> commands.zrevrange(raw(key), start, end)).thenApply(AsyncRedisOperationHelper::toSet);
+    }
+
+    public CompletableFuture<Set<String>> zSetRangeByScore(String key, Double min, Double max) {
+        return execute(commands -> commands.zrangebyscore(raw(key), Range.create(min, max)))
+                .thenApply(AsyncRedisOperationHelper::toSet);
+    }
+
+    public CompletableFuture<Long> zSetCount(String key, Double min, Double max) {
+        return execute(commands -> commands.zcount(raw(key), Range.create(min, max)));
+    }
+
+    // =======================================hash===================================
+
+    public CompletableFuture<Void> hashPut(String key, String hashKey, String value) {
+        return execute(commands -> commands.hset(raw(key), raw(hashKey), raw(value))).thenApply(result -> null);
+    }
+
+    /**
+     * 写入并设置过期时间，与 {@link RedisOperationHelper#hashPut(String, String, String, long, TimeUnit)} 一样通过Lua脚本原子完成
+     */
+    public CompletableFuture<Void> hashPut(String key, String hashKey, String value, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            return hashPut(key, hashKey, value);
+        }
+        return writeAndExpire("HSET", true, key, expire, timeUnit, 2, Arrays.asList(hashKey, value)).thenApply(result -> null);
+    }
+
+    public CompletableFuture<Void> hashPutAll(String key, Map<String, String> map) {
+        Map<byte[], byte[]> values = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((hashKey, value) -> values.put(raw(hashKey), raw(value)));
+        return execute(commands -> commands.hmset(raw(key), values)).thenApply(result -> null);
+    }
+
+    public CompletableFuture<String> hashGet(String key, String hashKey) {
+        return execute(commands -> commands.hget(raw(key), raw(hashKey))).thenApply(AsyncRedisOperationHelper::str);
+    }
+
+    public CompletableFuture<List<String>> hashMultiGet(String key, Collection<String> hashKeys) {
+        return execute(commands -> commands.hmget(raw(key), raw(hashKeys))).thenApply(AsyncRedisOperationHelper::values);
+    }
+
+    public CompletableFuture<Map<String, String>> hashGetAll(String key) {
+        return execute(commands -> commands.hgetall(raw(key))).thenApply(hash -> {
+            Map<String, String> result = new LinkedHashMap<>(hash.size() * 2);
+            hash.forEach((hashKey, value) -> result.put(str(hashKey), str(value)));
+            return result;
+        });
+    }
+
+    public CompletableFuture<Boolean> hashHasKey(String key, String hashKey) {
+        return execute(commands -> commands.hexists(raw(key), raw(hashKey)));
+    }
+
+    public CompletableFuture<Set<String>> hashKeys(String key) {
+        return execute(commands -> commands.hkeys(raw(key))).thenApply(AsyncRedisOperationHelper::toSet);
+    }
+
+    public CompletableFuture<List<String>> hashValues(String key) {
+        return execute(commands -> commands.hvals(raw(key))).thenApply(AsyncRedisOperationHelper::toList);
+    }
+
+    public CompletableFuture<Long> hashSize(String key) {
+        return execute(commands -> commands.hlen(raw(key)));
+    }
+
+    public CompletableFuture<Void> hashDelete(String key, Object... hashKeys) {
+        byte[][] fields = Arrays.stream(hashKeys).map(hashKey -> raw(String.valueOf(hashKey))).toArray(byte[][]::new);
+        return execute(commands -> commands.hdel(raw(key), fields)).thenApply(count -> null);
+    }
+
+    // =======================================内部方法===================================
+
+    /**
+     * 对象值的编解码，与RedisOperationHelper一样取redisTemplate所在数据源、db配置的编解码
+     */
+    private RedisValueCodec getValueCodec() {
+        if (redisTemplate instanceof ManagedRedisTemplate) {
+            RedisValueCodec codec = ((ManagedRedisTemplate<?, ?>) redisTemplate).getValueCodec();
+            if (codec != null) {
+                return codec;
+            }
+        }
+        return RedisValueCodecs.json();
+    }
+
+    private RedisValueCompressor getCompressor() {
+        return redisTemplate instanceof ManagedRedisTemplate
+                ? ((ManagedRedisTemplate<?, ?>) redisTemplate).getCompressor() : null;
+    }
+
+    private RedisShutdownCoordinator getShutdownCoordinator() {
+        return redisTemplate instanceof ManagedRedisTemplate
+                ? ((ManagedRedisTemplate<?, ?>) redisTemplate).getShutdownCoordinator() : null;
+    }
+
+    /**
+     * 通过共享的本地连接发送一条异步命令
+     * 先获取许可（达到maxInFlight时等待，netty的IO线程上不等待），再向停机协调器登记，命令完成时归还许可并结束登记
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> execute(Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        try {
+            if (!acquirePermit()) {
+                return failed(new RejectedExecutionException("too many in-flight async redis commands: " + maxInFlight));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(e);
+        }
+        RedisShutdownCoordinator coordinator = getShutdownCoordinator();
+        RedisFuture<T> future;
+        try {
+            if (coordinator != null) {
+                coordinator.beforeCommand();
+            }
+        } catch (RuntimeException e) {
+            permits.release();
+            return failed(e);
+        }
+        try {
+            // 共享本地连接时关闭RedisConnection不会关闭本地连接，已发送的命令继续执行
+            RedisConnection connection = connectionFactory.getConnection();
+            try {
+                future = command.apply((RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection());
+            } finally {
+                connection.close();
+            }
+        } catch (RuntimeException e) {
+            complete(coordinator);
+            return failed(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            complete(coordinator);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取执行许可。netty的IO线程（例如在future回调中继续发送命令）上不能阻塞，否则会卡住该线程上所有连接的读写，
+     * 包括归还许可的回调本身，只尝试一次，没有空闲时立即失败
+     */
+    private boolean acquirePermit() throws InterruptedException {
+        if (acquireTimeout.isZero() || Thread.currentThread() instanceof FastThreadLocalThread) {
+            return permits.tryAcquire();
+        }
+        return permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 异步执行 {@link RedisExpireScripts#WRITE_AND_EXPIRE}，写入和设置过期时间在一条命令内原子完成。
+     * 使用EVALSHA，脚本不存在（NOSCRIPT）时使用EVAL重新执行
+     */
+    private CompletableFuture<Long> writeAndExpire(String command, boolean sum, String key, long expire, TimeUnit timeUnit,
+                                                   int step, List<String> args) {
+        RedisScript<Long> script = RedisExpireScripts.WRITE_AND_EXPIRE;
+        byte[][] keys = {raw(key)};
+        byte[][] argv = raw(RedisExpireScripts.writeAndExpireArgs(command, sum, expire, timeUnit, step, args));
+        return this.<Long>execute(commands -> commands.evalsha(script.getSha1(), ScriptOutputType.INTEGER, keys, argv))
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    if (isNoScript(error)) {
+                        return this.<Long>execute(commands -> commands.eval(script.getScriptAsString(),
+                                ScriptOutputType.INTEGER, keys, argv));
+                    }
+                    return AsyncRedisOperationHelper.<Long>failed(error);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private static boolean isNoScript(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null && cause.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private void complete(RedisShutdownCoordinator coordinator) {
+        permits.release();
+        if (coordinator != null) {
+            coordinator.afterCommand();
+        }
+    }
+
+    private CompletableFuture<Void> setRaw(String key, byte[] value, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            return execute(commands -> commands.set(raw(key), value)).thenApply(result -> null);
+        }
+        long millis = toMillis(expire, timeUnit);
+        return execute(commands -> commands.psetex(raw(key), millis, value)).thenApply(result -> null);
+    }
+
+    private CompletableFuture<byte[]> getRaw(String key, long expire, TimeUnit timeUnit) {
+        CompletableFuture<byte[]> value = execute(commands -> commands.get(raw(key)));
+        if (expire == NOT_EXPIRE) {
+            return value;
+        }
+        // GET和PEXPIRE同时发送，不等待GET返回
+        return value.thenCombine(setExpire(key, expire, timeUnit), (result, expired) -> result);
+    }
+
+    private CompletableFuture<List<byte[]>> multiGetRaw(Collection<String> keys) {
+        return allOf(chunk(keys), chunk -> execute(commands -> commands.mget(raw(chunk)))).thenApply(chunks -> {
+            List<byte[]> values = new ArrayList<>(keys == null ? 0 : keys.size());
+            chunks.forEach(keyValues -> keyValues.forEach(keyValue -> values.add(keyValue.hasValue() ? keyValue.getValue() : null)));
+            return values;
+        });
+    }
+
+    private CompletableFuture<Void> multiSetRaw(Map<String, byte[]> values, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            return allOf(chunk(values.keySet()), chunk -> {
+                Map<byte[], byte[]> map = new LinkedHashMap<>(chunk.size() * 2);
+                chunk.forEach(key -> map.put(raw(key), values.get(key)));
+                return execute(commands -> commands.mset(map));
+            }).thenApply(results -> null);
+        }
+        return allOf(new ArrayList<>(values.keySet()), key -> setRaw(key, values.get(key), expire, timeUnit))
+                .thenApply(results -> null);
+    }
+
+    /**
+     * 对每个元素发送命令，所有命令完成后按元素顺序返回结果
+     */
+    private static <E, T> CompletableFuture<List<T>> allOf(List<E> elements, Function<E, CompletableFuture<T>> command) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(elements.size());
+        elements.forEach(element -> futures.add(command.apply(element)));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<T> results = new ArrayList<>(futures.size());
+            futures.forEach(future -> results.add(future.join()));
+            return results;
+        });
+    }
+
+    private static List<List<String>> chunk(Collection<String> keys) {
+        List<List<String>> chunks = new ArrayList<>();
+        if (keys == null || keys.isEmpty()) {
+            return chunks;
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        for (int from = 0; from < keyList.size(); from += MULTI_KEY_CHUNK_SIZE) {
+            chunks.add(keyList.subList(from, Math.min(from + MULTI_KEY_CHUNK_SIZE, keyList.size())));
+        }
+        return chunks;
+    }
+
+    private byte[] compress(String key, String value) {
+        byte[] bytes = raw(value);
+        RedisValueCompressor compressor = getCompressor();
+        return compressor == null ? bytes : compressor.compress(key, bytes);
+    }
+
+    private String decompress(byte[] value) {
+        RedisValueCompressor compressor = getCompressor();
+        return str(compressor == null || value == null ? value : compressor.decompress(value));
+    }
+
+    private static long toMillis(long expire, TimeUnit timeUnit) {
+        return (timeUnit == null ? TimeUnit.SECONDS : timeUnit).toMillis(expire);
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private static byte[] raw(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] raw(Collection<String> values) {
+        return values.stream().map(AsyncRedisOperationHelper::raw).toArray(byte[][]::new);
+    }
+
+    private static String str(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> toList(Collection<byte[]> values) {
+        List<String> result = new ArrayList<>(values.size());
+        values.forEach(value -> result.add(str(value)));
+        return result;
+    }
+
+    private static Set<String> toSet(Collection<byte[]> values) {
+        Set<String> result = new LinkedHashSet<>(values.size() * 2);
+        values.forEach(value -> result.add(str(value)));
+        return result;
+    }
+
+    private static List<String> values(List<KeyValue<byte[], byte[]>> keyValues) {
+        List<String> result = new ArrayList<>(keyValues.size());
+        keyValues.forEach(keyValue -> result.add(keyValue.hasValue() ? str(keyValue.getValue()) : null));
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package com.multiple.data.source.database.helper;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * 分块存储的大值的输入流，通过 {@link RedisOperationHelper#chunkedStream(String)} 获取
+ * 按需读取分块，每次在一个pipeline中读取fetchSize个分块，内存中最多保留fetchSize个分块。
+ * 读取过程中值被覆盖或删除（旧版本的分块已不存在）时抛出IOException
+ */
+class ChunkedValueInputStream extends InputStream {
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+
+    /**
+     * 按分块序号获取分块的key
+     */
+    private final IntFunction<byte[]> chunkKey;
+
+    private final int chunkCount;
+
+    private final int fetchSize;
+
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+
+    /**
+     * 下一个要读取的分块序号
+     */
+    private int nextChunk;
+
+    private byte[] current;
+
+    private int position;
+
+    ChunkedValueInputStream(RedisTemplate<String, byte[]> redisTemplate, IntFunction<byte[]> chunkKey, int chunkCount,
+                            int fetchSize) {
+        this.redisTemplate = redisTemplate;
+        this.chunkKey = chunkKey;
+        this.chunkCount = chunkCount;
+        this.fetchSize = Math.max(fetchSize, 1);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() {
+        chunks.clear();
+        current = null;
+        nextChunk = chunkCount;
+    }
+
+    /**
+     * 当前分块读完时切换到下一个分块
+     *
+     * @return 是否还有数据
+     */
+    private boolean ensureCurrent() throws IOException {
+        while (current == null || position >= current.length) {
+            if (chunks.isEmpty()) {
+                if (nextChunk >= chunkCount) {
+                    return false;
+                }
+                fetch();
+            }
+            current = chunks.poll();
+            position = 0;
+        }
+        return true;
+    }
+
+    private void fetch() throws IOException {
+        int from = nextChunk;
+        int to = Math.min(from + fetchSize, chunkCount);
+        List<Function<RedisConnection, Object>> commands = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            byte[] key = chunkKey.apply(i);
+            commands.add(connection -> connection.get(key));
+        }
+        List<Object> results = RedisOperationHelper.executeRaw(redisTemplate, commands);
+        for (Object result : results) {
+            if (result == null) {
+                throw new IOException("chunked value changed while reading, chunk " + (from + chunks.size()) + " not found.");
+            }
+            chunks.add((byte[]) result);
+        }
+        nextChunk = to;
+    }
+}
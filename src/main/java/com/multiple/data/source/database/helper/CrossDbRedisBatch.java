@@ -0,0 +1,99 @@
+package com.multiple.data.source.database.helper;
+
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 跨db的Redis批量操作，通过 {@link RedisHelper#crossDbBatch()} 获取
+ * 通过 {@link #db(int)} 切换之后记录的命令所在的db，执行时按db分组，所有命令在同一个连接的同一个pipeline中发送，
+ * 组与组之间插入SELECT，最后切换回连接的默认db再归还连接池。
+ * <pre>
+ * RedisBatchResult result = redisHelper.crossDbBatch()
+ *         .db(2).strGet("k1")
+ *         .db(3).hashGetAll("h1")
+ *         .db(4).strIncrement("counter", 1)
+ *         .execute();
+ * </pre>
+ * 返回值与记录命令的顺序一一对应，与分组后的执行顺序无关。集群模式只有db0，不支持跨db批量操作
+ */
+public class CrossDbRedisBatch extends AbstractRedisBatch<CrossDbRedisBatch> {
+
+    /**
+     * 可以切换db的redisTemplate（连接不共享）
+     */
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 连接借出时所在的db
+     */
+    private final int defaultDatabase;
+
+    /**
+     * 按db获取值压缩器，为空时使用redisTemplate配置的压缩器
+     */
+    private final IntFunction<RedisValueCompressor> compressors;
+
+    public CrossDbRedisBatch(RedisTemplate<String, String> redisTemplate, int defaultDatabase) {
+        this(redisTemplate, defaultDatabase, null);
+    }
+
+    /**
+     * @param compressors 按db获取值压缩器，例如 DynamicRedisTemplateFactory#getCompressor(int)
+     */
+    public CrossDbRedisBatch(RedisTemplate<String, String> redisTemplate, int defaultDatabase,
+                             IntFunction<RedisValueCompressor> compressors) {
+        Assert.notNull(redisTemplate, "redisTemplate must not be null.");
+        this.redisTemplate = redisTemplate;
+        this.defaultDatabase = defaultDatabase;
+        this.compressors = compressors;
+        // 没有调用db(int)之前记录的命令在默认db执行
+        setDatabase(defaultDatabase);
+    }
+
+    /**
+     * 切换之后记录的命令所在的db
+     *
+     * @param database db号
+     */
+    public CrossDbRedisBatch db(int database) {
+        Assert.isTrue(database >= 0, "database must not be negative.");
+        setDatabase(database);
+        return this;
+    }
+
+    @Override
+    protected RedisTemplate<String, String> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    @Override
+    protected int getDefaultDatabase() {
+        return defaultDatabase;
+    }
+
+    @Override
+    protected RedisValueCompressor getCompressor(int database) {
+        return compressors == null ? super.getCompressor(database) : compressors.apply(database);
+    }
+
+    /**
+     * 按db分组，组的顺序为db第一次出现的顺序，组内保持记录的顺序，每个组只需要一次SELECT
+     */
+    @Override
+    protected List<Integer> executionOrder(List<Command> commands) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            groups.computeIfAbsent(commands.get(i).getDatabase(), database -> new ArrayList<>()).add(i);
+        }
+        List<Integer> order = new ArrayList<>(commands.size());
+        groups.values().forEach(order::addAll);
+        return order;
+    }
+}
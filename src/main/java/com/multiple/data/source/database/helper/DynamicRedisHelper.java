@@ -1,5 +1,6 @@
 package com.multiple.data.source.database.helper;
 
+import com.multiple.data.source.database.config.DynamicRedisTemplateFactory;
 import com.multiple.data.source.database.options.DynamicRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 
@@ -33,7 +34,22 @@ public class DynamicRedisHelper extends RedisHelper {
     }
 
     /**
-     * 获取该redis数据源对应的多个RedisTemplate
+     * 跨db批量操作，使用该数据源的共享连接工厂（连接可以切换db）
+     * 没有开启单连接多db模式（stone.redis.single-connection）时，第一次调用会为该数据源额外创建一个连接工厂和连接池，
+     * 按连接池maxActive（lettuce再加1）占用连接预算，且不共享本地连接：lettuce没有配置连接池时每次批量操作都会新建一个连接。
+     * 频繁使用跨db批量操作时建议开启单连接多db模式（与各db共用同一个连接池）或配置lettuce连接池
+     */
+    @Override
+    public CrossDbRedisBatch crossDbBatch() {
+        DynamicRedisTemplateFactory<String, String> factory = redisTemplate.getDynamicRedisTemplateFactory();
+        if (factory.isCluster()) {
+            throw new RuntimeException("cluster mode can't change db.");
+        }
+        return new CrossDbRedisBatch(factory.getSharedRedisTemplate(), factory.getDefaultDatabase(), factory::getCompressor);
+    }
+
+    /**
+     * 获取该redis数据源当前已创建的多个RedisTemplate（快照）
      */
     @Override
     public Map<Object, RedisTemplate<String, String>> getRedisTemplates() {
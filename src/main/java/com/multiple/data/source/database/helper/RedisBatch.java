@@ -0,0 +1,61 @@
+package com.multiple.data.source.database.helper;
+
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import com.multiple.data.source.database.options.ManagedRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Redis批量操作，通过 {@link RedisOperationHelper#batch()} 获取
+ * 先记录命令，调用 {@link #execute()} 时在同一个连接上以pipeline的方式一次性发送，命令过多时按chunkSize分多次pipeline发送，
+ * 避免逐条操作时每条命令都要等待一次网络往返。
+ * <p>
+ * 返回值与命令一一对应，没有返回值的命令（例如hashPutAll）对应null
+ * <pre>
+ * RedisBatchResult result = helper.batch()
+ *         .strSet("k1", "v1")
+ *         .hashPutAll("h1", map)
+ *         .zSetAdd("z1", "m1", 1.0)
+ *         .strGet("k2")
+ *         .execute();
+ * String value = result.get(3);
+ * </pre>
+ * 集群模式下连接不支持pipeline，命令逐条执行。
+ * 该对象不是线程安全的，只在一个线程中构建和执行
+ */
+public class RedisBatch extends AbstractRedisBatch<RedisBatch> {
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 值压缩器，为空表示不压缩
+     */
+    private final RedisValueCompressor compressor;
+
+    /**
+     * 使用redisTemplate所在数据源、db配置的值压缩器
+     */
+    public RedisBatch(RedisTemplate<String, String> redisTemplate) {
+        this(redisTemplate, redisTemplate instanceof ManagedRedisTemplate
+                ? ((ManagedRedisTemplate<?, ?>) redisTemplate).getCompressor() : null);
+    }
+
+    /**
+     * @param compressor 值压缩器，为空表示不压缩
+     */
+    public RedisBatch(RedisTemplate<String, String> redisTemplate, RedisValueCompressor compressor) {
+        Assert.notNull(redisTemplate, "redisTemplate must not be null.");
+        this.redisTemplate = redisTemplate;
+        this.compressor = compressor;
+    }
+
+    @Override
+    protected RedisTemplate<String, String> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    @Override
+    protected RedisValueCompressor getCompressor(int database) {
+        return compressor;
+    }
+}
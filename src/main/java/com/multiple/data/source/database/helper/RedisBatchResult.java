@@ -0,0 +1,51 @@
+package com.multiple.data.source.database.helper;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Redis批量操作的返回值，与记录的命令一一对应
+ */
+public class RedisBatchResult {
+
+    private final List<Object> results;
+
+    public RedisBatchResult(List<Object> results) {
+        this.results = results == null ? Collections.emptyList() : Collections.unmodifiableList(results);
+    }
+
+    /**
+     * 获取第index条命令的返回值，没有返回值的命令返回null
+     *
+     * @param index 命令的顺序，从0开始
+     * @param <T>   返回值类型，例如strGet为String，hashGetAll为Map，strIncrement为Long
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int index) {
+        return (T) results.get(index);
+    }
+
+    /**
+     * 获取第index条命令的返回值并检查类型
+     *
+     * @param index 命令的顺序，从0开始
+     * @param type  返回值类型
+     */
+    public <T> T get(int index, Class<T> type) {
+        return type.cast(results.get(index));
+    }
+
+    /**
+     * 命令数
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * 所有命令的返回值
+     */
+    public List<Object> getResults() {
+        return results;
+    }
+}
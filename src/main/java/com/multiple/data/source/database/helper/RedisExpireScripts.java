@@ -0,0 +1,72 @@
+package com.multiple.data.source.database.helper;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入并设置过期时间的lua脚本，写入和设置过期时间在一次网络往返内原子完成，
+ * 不会出现写入成功但设置过期时间之前宕机而导致key永不过期的情况
+ */
+final class RedisExpireScripts {
+
+    /**
+     * 每条变参命令最多携带的参数个数，unpack受Lua栈大小（LUAI_MAXCSTACK，默认8000）限制，一次展开过多参数会报错
+     */
+    static final int MAX_ARGS_PER_CALL = 4000;
+
+    /**
+     * 对KEYS[1]按分片执行变参命令ARGV[2]，然后设置过期时间（毫秒）ARGV[1]
+     * ARGV[3]：每条命令的参数个数（每个元素参数个数的整数倍），ARGV[4]：sum表示返回每条命令返回值的和，last表示返回最后一条命令的返回值，其余为命令参数
+     */
+    static final RedisScript<Long> WRITE_AND_EXPIRE = new DefaultRedisScript<>(
+            "local slice = tonumber(ARGV[3]) "
+                    + "local result = 0 "
+                    + "for i = 5, #ARGV, slice do "
+                    + "  local reply = redis.call(ARGV[2], KEYS[1], unpack(ARGV, i, math.min(i + slice - 1, #ARGV))) "
+                    + "  if ARGV[4] == 'sum' then result = result + reply else result = reply end "
+                    + "end "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[1]) "
+                    + "return result", Long.class);
+
+    private RedisExpireScripts() {
+    }
+
+    /**
+     * 写入并设置过期时间
+     *
+     * @param redisTemplate redisTemplate
+     * @param command       变参写入命令，例如RPUSH、SADD、HSET、ZADD，参数按 {@link #MAX_ARGS_PER_CALL} 分片，每片执行一次
+     * @param sum           true返回每条命令返回值的和，false返回最后一条命令的返回值
+     * @param key           key
+     * @param expire        过期时长
+     * @param timeUnit      时间单位，为空则为秒
+     * @param step          每个元素的参数个数，例如ZADD的score、member为2
+     * @param args          命令参数
+     */
+    static Long writeAndExpire(RedisTemplate<String, String> redisTemplate, String command, boolean sum, String key,
+                               long expire, TimeUnit timeUnit, int step, List<String> args) {
+        return redisTemplate.execute(WRITE_AND_EXPIRE, Collections.singletonList(key),
+                writeAndExpireArgs(command, sum, expire, timeUnit, step, args).toArray());
+    }
+
+    /**
+     * {@link #WRITE_AND_EXPIRE} 的ARGV，参数含义见 {@link #writeAndExpire}，异步执行时使用
+     */
+    static List<String> writeAndExpireArgs(String command, boolean sum, long expire, TimeUnit timeUnit, int step,
+                                           List<String> args) {
+        List<String> argv = new ArrayList<>(args.size() + 4);
+        argv.add(String.valueOf((timeUnit == null ? TimeUnit.SECONDS : timeUnit).toMillis(expire)));
+        argv.add(command);
+        // 一个元素的参数不会被拆到两条命令中
+        argv.add(String.valueOf(Math.max(MAX_ARGS_PER_CALL / step, 1) * step));
+        argv.add(sum ? "sum" : "last");
+        argv.addAll(args);
+        return argv;
+    }
+}
@@ -63,6 +63,16 @@ public class RedisHelper implements InitializingBean {
 		logger.warn("Use default RedisHelper, you'd better use a DynamicRedisHelper instead.");
 	}
 
+	/**
+	 * 跨db批量操作，所有命令在同一个连接的同一个pipeline中发送，组与组之间通过SELECT切换db。
+	 * 没有开启单连接多db模式时会为数据源额外创建一个连接池，见 {@link DynamicRedisHelper#crossDbBatch()}。
+	 * 静态RedisHelper不能切换db，需要抛出异常
+	 */
+	public CrossDbRedisBatch crossDbBatch() {
+		logger.warn("Use default RedisHelper, you'd better use a DynamicRedisHelper instead.");
+		throw new RuntimeException("static redisHelper can't change db.");
+	}
+
 	/**
 	 * 获取RedisTemplates，静态RedisHelper中没有多个RedisTemplates，交给子类实现(这里适配其他功能)
 	 */
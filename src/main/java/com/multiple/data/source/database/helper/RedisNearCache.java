@@ -0,0 +1,589 @@
+package com.multiple.data.source.database.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内近端缓存（L1），缓存一个数据源一个db中String和Hash的读取结果
+ * 通过 {@link RedisOperationHelper#setNearCache(RedisNearCache)} 开启后，strGet、hashGet先读本地缓存，未命中时在一个pipeline中读取值和PTTL，
+ * 本地过期时间取redis剩余过期时间与maxTtl中较小的一个。缓存按LRU淘汰，同时受maxEntries和maxBytes（按字符数估算）限制。
+ * <p>
+ * 失效方式：
+ * 1、KEYSPACE：订阅 <code>__keyspace@db__:*</code>，任何客户端修改、删除、过期key时都会失效，需要redis开启 notify-keyspace-events KA
+ * 2、CHANNEL：通过RedisOperationHelper写入时向channel发布失效消息，其他实例收到后失效，不经过RedisOperationHelper的写入不会失效
+ * 本实例通过RedisOperationHelper写入时总是立即失效本地缓存。订阅断开期间的消息会丢失，最长在maxTtl后过期。
+ * 调用 {@link #start()} 之后，本实例收到自己发送的确认消息（订阅已生效）之前不缓存任何数据
+ */
+public class RedisNearCache implements MessageListener, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisNearCache.class);
+
+    /**
+     * CHANNEL模式默认的失效消息channel
+     */
+    public static final String DEFAULT_CHANNEL = "stone:near-cache:invalidate";
+
+    /**
+     * 每个缓存项除key、value以外的估算开销（字节）
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * 未命中
+     */
+    private static final Object MISS = new Object();
+
+    /**
+     * 加载期间最多记录的失效key数量，超过后丢弃记录，正在进行的加载都不写入缓存
+     */
+    private static final int MAX_TOMBSTONES = 10000;
+
+    /**
+     * 订阅确认之前，未命中时重新发送确认消息的最小间隔，单位：毫秒
+     */
+    private static final long PROBE_INTERVAL_MILLIS = 1000L;
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 缓存的db，用于订阅keyspace事件以及过滤失效消息
+     */
+    private final int database;
+
+    private int maxEntries = 10000;
+
+    private long maxBytes = 64L * 1024 * 1024;
+
+    private Duration maxTtl = Duration.ofMinutes(1);
+
+    private InvalidationMode invalidationMode = InvalidationMode.KEYSPACE;
+
+    private String channel = DEFAULT_CHANNEL;
+
+    /**
+     * 按访问顺序排列，最久未访问的在最前面，key: redis key
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    /**
+     * 失效序号，每次失效加一，加载开始时记录当前序号
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 正在进行的加载数量
+     */
+    private final AtomicInteger loading = new AtomicInteger();
+
+    /**
+     * 有加载正在进行时失效的key，key: redis key，value: 失效序号。
+     * 加载开始之后该key失效过则不写入缓存，避免写入旧值，其他key的失效不影响该加载；没有加载正在进行时清空
+     */
+    private final Map<String, Long> tombstones = new HashMap<>();
+
+    /**
+     * 开始序号小于该值的加载都不写入缓存（clear或失效记录过多时设置）
+     */
+    private long tombstoneFloor;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private volatile RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 处理失效消息的线程，单线程按顺序处理
+     */
+    private ExecutorService listenerExecutor;
+
+    /**
+     * 执行订阅的线程，jedis的订阅会一直阻塞该线程
+     */
+    private ExecutorService subscriptionExecutor;
+
+    /**
+     * 确认订阅生效的消息使用的key，本实例收到该key的消息后才启用缓存
+     */
+    private final String probeKey = "stone:near-cache:probe:" + UUID.randomUUID();
+
+    /**
+     * 是否已收到确认消息
+     */
+    private volatile boolean subscribed;
+
+    /**
+     * 最后一次发送确认消息的时间
+     */
+    private volatile long lastProbe;
+
+    /**
+     * @param redisTemplate 操作该db的redisTemplate，例如 redisHelper.opsOtherDb(db)。近端缓存会长期持有它，
+     *                      开启了RedisTemplate缓存淘汰时只能使用不会被淘汰的默认db的redisTemplate
+     * @param database      redisTemplate操作的db号
+     */
+    public RedisNearCache(RedisTemplate<String, String> redisTemplate, int database) {
+        Assert.notNull(redisTemplate, "redisTemplate must not be null.");
+        this.redisTemplate = redisTemplate;
+        this.database = database;
+    }
+
+    /**
+     * 订阅失效消息，订阅成功前不启用缓存
+     */
+    public synchronized void start() {
+        if (listenerContainer != null) {
+            return;
+        }
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisTemplate.getRequiredConnectionFactory());
+        // 默认的SimpleAsyncTaskExecutor每条消息创建一个线程，KEYSPACE模式下每次写入、过期都会产生消息
+        listenerExecutor = newDaemonExecutor("redis-near-cache-db" + database);
+        container.setTaskExecutor(listenerExecutor);
+        // 没有指定时容器使用taskExecutor执行订阅，jedis的订阅会一直占用唯一的线程，失效消息永远不会被处理
+        subscriptionExecutor = newDaemonExecutor("redis-near-cache-subscription-db" + database);
+        container.setSubscriptionExecutor(subscriptionExecutor);
+        if (invalidationMode == InvalidationMode.KEYSPACE) {
+            container.addMessageListener(this, new PatternTopic(keyspacePrefix() + "*"));
+        } else {
+            container.addMessageListener(this, new ChannelTopic(channel));
+        }
+        container.afterPropertiesSet();
+        container.start();
+        listenerContainer = container;
+        // 容器启动时订阅可能还没有生效，收到自己发送的确认消息后才启用缓存
+        probe();
+        LOGGER.info("redis near cache of db{} started, invalidation: {}.", database, invalidationMode);
+    }
+
+    /**
+     * 订阅是否已确认生效，生效之后才缓存数据
+     */
+    public boolean isRunning() {
+        RedisMessageListenerContainer container = listenerContainer;
+        return subscribed && container != null && container.isRunning();
+    }
+
+    /**
+     * 发送一条本实例订阅范围内的确认消息
+     */
+    private void probe() {
+        lastProbe = System.currentTimeMillis();
+        try {
+            if (invalidationMode == InvalidationMode.KEYSPACE) {
+                redisTemplate.convertAndSend(keyspacePrefix() + probeKey, "probe");
+            } else {
+                redisTemplate.convertAndSend(channel, database + ":" + probeKey);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("publish near cache subscription probe of db{} failed: {}", database, e.getMessage());
+        }
+    }
+
+    /**
+     * 已订阅但还没有收到确认消息时，按间隔重新发送（第一次发送时订阅可能还没有完成）
+     */
+    private void probeIfDue() {
+        if (listenerContainer != null && !subscribed && System.currentTimeMillis() - lastProbe >= PROBE_INTERVAL_MILLIS) {
+            probe();
+        }
+    }
+
+    private static ExecutorService newDaemonExecutor(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * String 读取值，未命中时读取redis并缓存
+     */
+    public String strGet(String key) {
+        Object cached = lookup(key, null);
+        if (cached != MISS) {
+            return (String) cached;
+        }
+        long loadSequence = beginLoad();
+        try {
+            RedisBatchResult result = new RedisBatch(redisTemplate).strGet(key).pTtl(key).execute();
+            String value = result.get(0);
+            putIfUnchanged(key, null, value, result.get(1), loadSequence);
+            return value;
+        } finally {
+            endLoad();
+        }
+    }
+
+    /**
+     * Hash 读取值，未命中时读取redis并缓存
+     */
+    public String hashGet(String key, String hashKey) {
+        Object cached = lookup(key, hashKey);
+        if (cached != MISS) {
+            return (String) cached;
+        }
+        long loadSequence = beginLoad();
+        try {
+            RedisBatchResult result = new RedisBatch(redisTemplate).hashGet(key, hashKey).pTtl(key).execute();
+            String value = result.get(0);
+            putIfUnchanged(key, hashKey, value, result.get(1), loadSequence);
+            return value;
+        } finally {
+            endLoad();
+        }
+    }
+
+    /**
+     * 本地失效
+     */
+    public void invalidate(String key) {
+        synchronized (this) {
+            long invalidateSequence = sequence.incrementAndGet();
+            if (loading.get() > 0) {
+                tombstones.put(key, invalidateSequence);
+                if (tombstones.size() > MAX_TOMBSTONES) {
+                    tombstoneFloor = invalidateSequence;
+                    tombstones.clear();
+                }
+            }
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                bytes -= entry.bytes;
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * 本地失效，CHANNEL模式下同时通知其他实例失效
+     */
+    public void invalidateAndPublish(String key) {
+        invalidate(key);
+        if (invalidationMode == InvalidationMode.CHANNEL && listenerContainer != null) {
+            try {
+                redisTemplate.convertAndSend(channel, database + ":" + key);
+            } catch (RuntimeException e) {
+                LOGGER.warn("publish near cache invalidation of {} failed: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 清空本地缓存
+     */
+    public void clear() {
+        synchronized (this) {
+            tombstoneFloor = sequence.incrementAndGet();
+            tombstones.clear();
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (invalidationMode == InvalidationMode.KEYSPACE) {
+            // channel: __keyspace@db__:key，body: 事件名称
+            String channelName = new String(message.getChannel(), StandardCharsets.UTF_8);
+            String prefix = keyspacePrefix();
+            if (channelName.startsWith(prefix)) {
+                onInvalidate(channelName.substring(prefix.length()));
+            }
+            return;
+        }
+        // body: db:key
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index > 0 && body.substring(0, index).equals(String.valueOf(database))) {
+            onInvalidate(body.substring(index + 1));
+        }
+    }
+
+    private void onInvalidate(String key) {
+        if (probeKey.equals(key)) {
+            if (!subscribed) {
+                subscribed = true;
+                LOGGER.info("redis near cache of db{} subscription confirmed.", database);
+            }
+            return;
+        }
+        invalidate(key);
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+            listenerContainer = null;
+        }
+        subscribed = false;
+        if (listenerExecutor != null) {
+            listenerExecutor.shutdownNow();
+            listenerExecutor = null;
+        }
+        if (subscriptionExecutor != null) {
+            subscriptionExecutor.shutdownNow();
+            subscriptionExecutor = null;
+        }
+        clear();
+    }
+
+    /**
+     * 查找缓存，过期的缓存项在这里删除
+     *
+     * @param hashKey 为空表示String
+     * @return 缓存的值，未命中时为MISS
+     */
+    private Object lookup(String key, String hashKey) {
+        if (!isRunning()) {
+            probeIfDue();
+            misses.increment();
+            return MISS;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expireAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                bytes -= entry.bytes;
+                entry = null;
+            }
+            if (entry != null) {
+                if (hashKey == null && entry.fields == null) {
+                    hits.increment();
+                    return entry.value;
+                }
+                if (hashKey != null && entry.fields != null && entry.fields.containsKey(hashKey)) {
+                    hits.increment();
+                    return entry.fields.get(hashKey);
+                }
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    /**
+     * 开始加载，先登记再读取序号，保证加载期间的失效都会记录
+     *
+     * @return 加载开始时的失效序号
+     */
+    private long beginLoad() {
+        loading.incrementAndGet();
+        return sequence.get();
+    }
+
+    /**
+     * 加载结束，没有其他加载正在进行时清空失效记录
+     */
+    private void endLoad() {
+        if (loading.decrementAndGet() == 0) {
+            synchronized (this) {
+                if (loading.get() == 0) {
+                    tombstones.clear();
+                }
+            }
+        }
+    }
+
+    private void putIfUnchanged(String key, String hashKey, String value, Long ttlMillis, long loadSequence) {
+        // key不存在（-2）或值为空时不缓存
+        if (value == null || ttlMillis == null || ttlMillis == -2 || !isRunning()) {
+            return;
+        }
+        long maxTtlMillis = maxTtl.toMillis();
+        long ttl = ttlMillis < 0 ? maxTtlMillis : Math.min(ttlMillis, maxTtlMillis);
+        if (ttl <= 0) {
+            return;
+        }
+        long size = 2L * (value.length() + (hashKey == null ? 0 : hashKey.length()));
+        synchronized (this) {
+            // 加载期间该key失效过，值可能已经过时
+            Long invalidateSequence = tombstones.get(key);
+            if (loadSequence < tombstoneFloor || invalidateSequence != null && invalidateSequence > loadSequence) {
+                return;
+            }
+            long expireAt = System.nanoTime() + ttl * 1_000_000L;
+            Entry entry = entries.get(key);
+            if (hashKey == null) {
+                if (entry != null) {
+                    bytes -= entry.bytes;
+                }
+                entry = new Entry(value, null, expireAt, ENTRY_OVERHEAD + 2L * key.length() + size);
+                entries.put(key, entry);
+                bytes += entry.bytes;
+            } else {
+                if (entry == null || entry.fields == null) {
+                    if (entry != null) {
+                        bytes -= entry.bytes;
+                    }
+                    entry = new Entry(null, new HashMap<>(), expireAt, ENTRY_OVERHEAD + 2L * key.length());
+                    entries.put(key, entry);
+                    bytes += entry.bytes;
+                }
+                String old = entry.fields.put(hashKey, value);
+                long delta = old == null ? size : 2L * (value.length() - old.length());
+                entry.bytes += delta;
+                bytes += delta;
+                entry.expireAt = Math.min(entry.expireAt, expireAt);
+            }
+            evict();
+        }
+    }
+
+    /**
+     * 超过maxEntries或maxBytes时淘汰最久未访问的缓存项
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            bytes -= entry.bytes;
+            evictions.increment();
+        }
+    }
+
+    private String keyspacePrefix() {
+        return "__keyspace@" + database + "__:";
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * 命中率，没有请求时为0
+     */
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 估算占用的内存（字节）
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public int getDatabase() {
+        return database;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        Assert.isTrue(maxEntries > 0, "maxEntries must be positive.");
+        this.maxEntries = maxEntries;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        Assert.isTrue(maxBytes > 0, "maxBytes must be positive.");
+        this.maxBytes = maxBytes;
+    }
+
+    public void setMaxTtl(Duration maxTtl) {
+        Assert.notNull(maxTtl, "maxTtl must not be null.");
+        this.maxTtl = maxTtl;
+    }
+
+    public void setInvalidationMode(InvalidationMode invalidationMode) {
+        Assert.notNull(invalidationMode, "invalidationMode must not be null.");
+        this.invalidationMode = invalidationMode;
+    }
+
+    public void setChannel(String channel) {
+        Assert.hasText(channel, "channel must not be empty.");
+        this.channel = channel;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RedisNearCache{db=%d, size=%d, bytes=%d, hitRatio=%.4f, evictions=%d, invalidations=%d}",
+                database, size(), getBytes(), getHitRatio(), getEvictionCount(), getInvalidationCount());
+    }
+
+    /**
+     * 失效方式
+     */
+    public enum InvalidationMode {
+
+        /**
+         * 订阅redis keyspace事件
+         */
+        KEYSPACE,
+
+        /**
+         * 订阅自定义的失效消息channel
+         */
+        CHANNEL
+    }
+
+    private static final class Entry {
+
+        /**
+         * String的值
+         */
+        private final String value;
+
+        /**
+         * Hash已缓存的域，String为空
+         */
+        private final Map<String, String> fields;
+
+        private long expireAt;
+
+        private long bytes;
+
+        private Entry(String value, Map<String, String> fields, long expireAt, long bytes) {
+            this.value = value;
+            this.fields = fields;
+            this.expireAt = expireAt;
+            this.bytes = bytes;
+        }
+    }
+}
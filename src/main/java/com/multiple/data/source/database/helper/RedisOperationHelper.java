@@ -2,21 +2,34 @@ package com.multiple.data.source.database.helper;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.multiple.data.source.database.convert.DateDeserializer;
-import com.multiple.data.source.database.convert.DateSerializer;
+import com.multiple.data.source.database.convert.RedisJsonCodec;
+import com.multiple.data.source.database.convert.RedisValueCodec;
+import com.multiple.data.source.database.convert.RedisValueCodecs;
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import com.multiple.data.source.database.options.ManagedRedisTemplate;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @Author: tang lirong
@@ -37,16 +50,93 @@ public class RedisOperationHelper {
      */
     public static final long NOT_EXPIRE = -1;
 
+    /**
+     * 多key操作时每条命令包含的最大key数量，超过时拆分为多条命令在同一个pipeline中发送
+     */
+    public static final int MULTI_KEY_CHUNK_SIZE = 500;
+
+    /**
+     * SCAN系列命令每次迭代建议返回的元素数量（COUNT）
+     */
+    public static final int DEFAULT_SCAN_COUNT = 100;
+
+    /**
+     * 分块存储时每个分块的默认大小，单位：字节
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 分块存储的manifest字段：版本号、分块数量、值的总长度、不超过一个分块的值
+     */
+    private static final byte[] MANIFEST_VERSION = rawKey("version");
+
+    private static final byte[] MANIFEST_CHUNKS = rawKey("chunks");
+
+    private static final byte[] MANIFEST_SIZE = rawKey("size");
+
+    private static final byte[] MANIFEST_DATA = rawKey("data");
+
+    /**
+     * 原子替换manifest并返回被替换的版本号和分块数量
+     * ARGV[1]：版本号，ARGV[2]：分块数量，ARGV[3]：总长度，ARGV[4]：过期时间（毫秒），-1表示不过期，ARGV[5]：不超过一个分块的值
+     */
+    private static final byte[] CHUNK_MANIFEST_SWAP = rawKey(
+            "local previous = redis.call('HMGET', KEYS[1], 'version', 'chunks') "
+                    + "redis.call('DEL', KEYS[1]) "
+                    + "if ARGV[2] == '0' then "
+                    + "  redis.call('HMSET', KEYS[1], 'version', ARGV[1], 'chunks', ARGV[2], 'size', ARGV[3], 'data', ARGV[5]) "
+                    + "else "
+                    + "  redis.call('HMSET', KEYS[1], 'version', ARGV[1], 'chunks', ARGV[2], 'size', ARGV[3]) "
+                    + "end "
+                    + "if ARGV[4] ~= '-1' then redis.call('PEXPIRE', KEYS[1], ARGV[4]) end "
+                    + "return previous");
+
+    /**
+     * 读取分块存储的值时，每个pipeline读取的分块数量
+     */
+    private static final int CHUNK_FETCH_SIZE = 4;
+
     /**
      * objectMapper对象
      */
     static final ObjectMapper objectMapper;
 
+    /**
+     * json编解码，按类型缓存ObjectReader、ObjectWriter
+     */
+    private static final RedisJsonCodec JSON_CODEC = RedisJsonCodec.DEFAULT;
+
     /**
      * 使用连向默认的redis实例的redisTemplate
      */
     private RedisTemplate<String, String> redisTemplate;
 
+    /**
+     * 进程内近端缓存，为空表示不开启
+     */
+    private RedisNearCache nearCache;
+
+    /**
+     * value为byte[]的redisTemplate，与redisTemplate共用连接工厂，对象直接序列化为字节写入，
+     * redisTemplate不是DynamicRedisTemplateFactory创建的时候第一次使用时创建
+     */
+    private volatile RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    /**
+     * 分块存储时每个分块的大小，单位：字节
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * 对象值的编解码，为空时使用redisTemplate所在数据源、db配置的编解码
+     */
+    private RedisValueCodec valueCodec;
+
+    /**
+     * 值压缩器，为空时使用redisTemplate所在数据源、db配置的压缩器
+     */
+    private RedisValueCompressor compressor;
+
 
     protected ValueOperations<String, String> getValueOperations() {
         return redisTemplate.opsForValue();
@@ -69,22 +159,348 @@ public class RedisOperationHelper {
     }
 
     static {
-        objectMapper = new ObjectMapper();
-        JavaTimeModule javaTimeModule = new JavaTimeModule();
-        javaTimeModule.addSerializer(Date.class, new DateSerializer());
-        javaTimeModule.addDeserializer(Date.class, new DateDeserializer());
-        objectMapper.registerModule(javaTimeModule);
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper = JSON_CODEC.getObjectMapper();
     }
 
     public RedisOperationHelper() {}
 
+    /**
+     * @param redisTemplate 操作的redisTemplate。开启了RedisTemplate缓存淘汰时，opsOtherDb等返回的redisTemplate被淘汰后
+     *                      其连接池会被销毁，长期持有的RedisOperationHelper应使用默认db的redisTemplate
+     */
     public RedisOperationHelper(RedisTemplate<String, String> redisTemplate){
         this.redisTemplate = redisTemplate;
     }
 
+    /**
+     * 开启近端缓存，strGet、hashGet先读本地缓存，通过该对象写入、删除key时失效本地缓存
+     *
+     * @param nearCache 与redisTemplate操作同一个db的近端缓存，需要已经调用 {@link RedisNearCache#start()}
+     */
+    public void setNearCache(RedisNearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public RedisNearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * 指定对象方法（objectSet、objectMultiSet、strGet(key, Class)、strMultiGet(keys, Class)）使用的编解码，
+     * 覆盖数据源、db的配置。hash中的对象仍然使用json
+     *
+     * @param valueCodec 编解码，为空表示使用数据源、db配置的编解码
+     */
+    public void setValueCodec(RedisValueCodec valueCodec) {
+        this.valueCodec = valueCodec;
+    }
+
+    /**
+     * 设置分块存储（chunkedSet）时每个分块的大小，超过该大小的值拆分为多个分块
+     *
+     * @param chunkSize 分块大小，单位：字节
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0.");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 对象方法使用的编解码：通过setValueCodec指定的优先，其次是redisTemplate所在数据源、db配置的编解码，
+     * 都没有（例如容器创建的redisTemplate）时使用json
+     */
+    public RedisValueCodec getValueCodec() {
+        if (valueCodec != null) {
+            return valueCodec;
+        }
+        if (redisTemplate instanceof ManagedRedisTemplate) {
+            RedisValueCodec codec = ((ManagedRedisTemplate<?, ?>) redisTemplate).getValueCodec();
+            if (codec != null) {
+                return codec;
+            }
+        }
+        return RedisValueCodecs.json();
+    }
+
+    /**
+     * 开启值压缩，覆盖数据源、db的配置。开启后字符串和对象的读写（strSet、strSetIfAbsent、strGet、strMultiSet、strMultiGet
+     * 以及对象方法）通过byte[]的redisTemplate进行，达到最小压缩长度的值压缩后写入，读取时自动解压；近端缓存不再用于strGet。
+     * batch()/crossDbBatch()的strSet、strMultiSet、strGet、strMultiGet，AsyncRedisOperationHelper，直接使用的RedisNearCache
+     * 同样压缩、解压；strGet(key, start, end)读取整个值解压后截取；strIncrement的值是数字，达不到最小压缩长度，不受影响。
+     * hash、list、set、zset的值不压缩；eval执行的脚本、redisTemplate直接读取时拿到的是压缩后的字节
+     *
+     * @param compressor 压缩器，为空表示使用数据源、db配置的压缩器
+     */
+    public void setCompressor(RedisValueCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * 值压缩器：通过setCompressor指定的优先，其次是redisTemplate所在数据源、db配置的压缩器
+     *
+     * @return 为空表示不压缩
+     */
+    public RedisValueCompressor getCompressor() {
+        if (compressor != null) {
+            return compressor;
+        }
+        if (redisTemplate instanceof ManagedRedisTemplate) {
+            return ((ManagedRedisTemplate<?, ?>) redisTemplate).getCompressor();
+        }
+        return null;
+    }
+
+    /**
+     * 获取value为byte[]的RedisTemplate，与当前redisTemplate操作同一个数据源的同一个db。
+     * 优先使用DynamicRedisTemplateFactory随redisTemplate一起创建的byte[] redisTemplate，其他redisTemplate第一次使用时创建，
+     * redisTemplate没有连接工厂（例如按线程路由的DynamicRedisTemplate）时返回null
+     */
+    public RedisTemplate<String, byte[]> getByteRedisTemplate() {
+        if (redisTemplate instanceof ManagedRedisTemplate) {
+            RedisTemplate<String, byte[]> managed = ((ManagedRedisTemplate<?, ?>) redisTemplate).getByteRedisTemplate();
+            if (managed != null) {
+                return managed;
+            }
+        }
+        RedisTemplate<String, byte[]> template = byteRedisTemplate;
+        if (template == null && redisTemplate.getConnectionFactory() != null) {
+            synchronized (this) {
+                template = byteRedisTemplate;
+                if (template == null) {
+                    ManagedRedisTemplate<String, byte[]> managedRedisTemplate = new ManagedRedisTemplate<>();
+                    if (redisTemplate instanceof ManagedRedisTemplate) {
+                        // 与原redisTemplate一样参与优雅停机
+                        managedRedisTemplate.setShutdownCoordinator(
+                                ((ManagedRedisTemplate<?, ?>) redisTemplate).getShutdownCoordinator());
+                    }
+                    StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
+                    managedRedisTemplate.setKeySerializer(stringRedisSerializer);
+                    managedRedisTemplate.setHashKeySerializer(stringRedisSerializer);
+                    managedRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+                    managedRedisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+                    managedRedisTemplate.setConnectionFactory(redisTemplate.getConnectionFactory());
+                    managedRedisTemplate.afterPropertiesSet();
+                    template = managedRedisTemplate;
+                    byteRedisTemplate = template;
+                }
+            }
+        }
+        return template;
+    }
+
+    /**
+     * 写入、删除key之后失效近端缓存
+     */
+    private void invalidateNearCache(String key) {
+        if (nearCache != null) {
+            nearCache.invalidateAndPublish(key);
+        }
+    }
+
+    private void invalidateNearCache(Collection<String> keys) {
+        if (nearCache != null) {
+            keys.forEach(nearCache::invalidateAndPublish);
+        }
+    }
+
+    /**
+     * 二进制编解码、值压缩只能通过byte[]的redisTemplate读写
+     */
+    private RedisTemplate<String, byte[]> getRequiredByteRedisTemplate() {
+        RedisTemplate<String, byte[]> template = getByteRedisTemplate();
+        if (template == null) {
+            throw new IllegalStateException("binary value codec and compression need a redisTemplate with connection factory.");
+        }
+        return template;
+    }
+
+    /**
+     * 值是否需要以字节读写：非json编解码或开启了压缩
+     */
+    private static boolean isRawValue(RedisValueCodec codec, RedisValueCompressor compressor) {
+        return codec != RedisValueCodecs.json() || compressor != null;
+    }
+
+    /**
+     * 通过byte[]的redisTemplate写入
+     */
+    private void setRaw(String key, byte[] value, long expire, TimeUnit timeUnit) {
+        ValueOperations<String, byte[]> operations = getRequiredByteRedisTemplate().opsForValue();
+        if (expire == NOT_EXPIRE) {
+            operations.set(key, value);
+        } else {
+            operations.set(key, value, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        }
+        invalidateNearCache(key);
+    }
+
+    /**
+     * 通过byte[]的redisTemplate读取，设置过期时间时GET和PEXPIRE以pipeline的方式在一次网络往返内完成
+     */
+    private byte[] getRaw(String key, long expire, TimeUnit timeUnit) {
+        RedisTemplate<String, byte[]> template = getRequiredByteRedisTemplate();
+        if (expire == NOT_EXPIRE) {
+            return template.opsForValue().get(key);
+        }
+        byte[] rawKey = rawKey(key);
+        List<Object> results = executeRaw(template, Arrays.asList(
+                connection -> connection.get(rawKey),
+                connection -> connection.pExpire(rawKey, (timeUnit == null ? TimeUnit.SECONDS : timeUnit).toMillis(expire))));
+        return (byte[]) results.get(0);
+    }
+
+    /**
+     * 通过byte[]的redisTemplate批量读取，按 {@link #MULTI_KEY_CHUNK_SIZE} 拆分为多条MGET在同一个pipeline中发送
+     */
+    private List<byte[]> multiGetRaw(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Function<RedisConnection, Object>> commands = new ArrayList<>();
+        chunk(keys).forEach(chunk -> {
+            byte[][] rawKeys = chunk.stream().map(RedisOperationHelper::rawKey).toArray(byte[][]::new);
+            commands.add(connection -> connection.mGet(rawKeys));
+        });
+        List<byte[]> values = new ArrayList<>(keys.size());
+        for (Object chunkValues : executeRaw(getRequiredByteRedisTemplate(), commands)) {
+            @SuppressWarnings("unchecked")
+            List<byte[]> list = (List<byte[]>) chunkValues;
+            values.addAll(list);
+        }
+        return values;
+    }
+
+    /**
+     * 通过byte[]的redisTemplate批量写入，不设置过期时间时按 {@link #MULTI_KEY_CHUNK_SIZE} 拆分为多条MSET，
+     * 设置过期时间时每个key一条PSETEX，在同一个pipeline中发送
+     */
+    private void multiSetRaw(Map<String, byte[]> values, long expire, TimeUnit timeUnit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        List<Function<RedisConnection, Object>> commands = new ArrayList<>();
+        if (expire == NOT_EXPIRE) {
+            chunk(values.keySet()).forEach(keys -> {
+                Map<byte[], byte[]> chunk = new LinkedHashMap<>(keys.size() * 2);
+                keys.forEach(key -> chunk.put(rawKey(key), values.get(key)));
+                commands.add(connection -> connection.mSet(chunk));
+            });
+        } else {
+            long millis = (timeUnit == null ? TimeUnit.SECONDS : timeUnit).toMillis(expire);
+            values.forEach((key, value) -> {
+                byte[] rawKey = rawKey(key);
+                commands.add(connection -> connection.pSetEx(rawKey, millis, value));
+            });
+        }
+        executeRaw(getRequiredByteRedisTemplate(), commands);
+        invalidateNearCache(values.keySet());
+    }
+
+    /**
+     * 在byte[]的redisTemplate的同一个连接上以pipeline的方式执行多条命令，集群连接不支持pipeline时逐条执行
+     *
+     * @return 与命令一一对应的原始结果
+     */
+    static List<Object> executeRaw(RedisTemplate<String, byte[]> template,
+                                   List<Function<RedisConnection, Object>> commands) {
+        return template.execute((RedisCallback<List<Object>>) connection -> {
+            if (connection instanceof RedisClusterConnection) {
+                List<Object> results = new ArrayList<>(commands.size());
+                commands.forEach(command -> results.add(command.apply(connection)));
+                return results;
+            }
+            connection.openPipeline();
+            try {
+                commands.forEach(command -> command.apply(connection));
+            } catch (RuntimeException e) {
+                connection.closePipeline();
+                throw e;
+            }
+            return connection.closePipeline();
+        });
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] compress(RedisValueCompressor compressor, String key, String value) {
+        return compressor.compress(key, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decompress(RedisValueCompressor compressor, byte[] value) {
+        return value == null ? null : new String(compressor.decompress(value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按编解码序列化对象并压缩
+     */
+    static byte[] encodeValue(RedisValueCodec codec, RedisValueCompressor compressor, String key, Object object) {
+        byte[] value = encode(codec, object);
+        return compressor == null ? value : compressor.compress(key, value);
+    }
+
+    /**
+     * 解压并按编解码反序列化
+     */
+    static <T> T decodeValue(RedisValueCodec codec, RedisValueCompressor compressor, byte[] value, Class<T> clazz) {
+        return decode(codec, compressor == null || value == null ? value : compressor.decompress(value), clazz);
+    }
+
+    /**
+     * 按编解码序列化对象，失败时与 {@link #toJsonBytes(Object)} 一样返回空字节
+     */
+    private static byte[] encode(RedisValueCodec codec, Object object) {
+        if (object == null) {
+            return new byte[0];
+        }
+        try {
+            return codec.encode(object);
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            return new byte[0];
+        }
+    }
+
+    /**
+     * 按编解码反序列化，失败时与 {@link #fromJson(byte[], Class)} 一样返回null
+     */
+    private static <T> T decode(RedisValueCodec codec, byte[] bytes, Class<T> clazz) {
+        if (bytes == null || bytes.length == 0 || clazz == null) {
+            return null;
+        }
+        try {
+            return codec.decode(bytes, clazz);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
     // =======================================以下是基于redisTemplate封装的redis操作===================================
 
+    /**
+     * 批量操作，记录的命令在同一个连接上以pipeline的方式一次性发送
+     */
+    public RedisBatch batch() {
+        return new RedisBatch(redisTemplate, getCompressor());
+    }
+
+    /**
+     * 批量操作，记录的命令在同一个连接上以pipeline的方式发送
+     *
+     * @param chunkSize 每次pipeline发送的命令数
+     */
+    public RedisBatch batch(int chunkSize) {
+        return new RedisBatch(redisTemplate, getCompressor()).chunkSize(chunkSize);
+    }
+
     /**
      * 删除key
      *
@@ -92,6 +508,7 @@ public class RedisOperationHelper {
      */
     public void delKey(String key) {
         redisTemplate.delete(key);
+        invalidateNearCache(key);
     }
 
     /**
@@ -153,7 +570,9 @@ public class RedisOperationHelper {
      * @param timeUnit 时间单位
      */
     public Boolean setExpire(String key, long expire, TimeUnit timeUnit) {
-        return redisTemplate.expire(key, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        Boolean result = redisTemplate.expire(key, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        invalidateNearCache(key);
+        return result;
     }
 
     /**
@@ -162,7 +581,138 @@ public class RedisOperationHelper {
      * @param keys 待删除的keys
      */
     public void delKeys(Collection<String> keys) {
-        redisTemplate.delete(new HashSet<>(keys));
+        redisTemplate.delete(keys);
+        invalidateNearCache(keys);
+    }
+
+    /**
+     * 删除key（UNLINK），大key的内存在redis后台线程释放，不会阻塞其他客户端
+     *
+     * @param key key
+     * @return key是否存在
+     */
+    public Boolean unlinkKey(String key) {
+        Boolean result = redisTemplate.unlink(key);
+        invalidateNearCache(key);
+        return result;
+    }
+
+    /**
+     * 批量删除key（UNLINK），key过多时按 {@link #MULTI_KEY_CHUNK_SIZE} 拆分为多条UNLINK在同一个pipeline中发送
+     *
+     * @param keys 待删除的keys
+     * @return 删除的key数量
+     */
+    public long unlinkKeys(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return 0;
+        }
+        RedisBatch batch = batch(MULTI_KEY_CHUNK_SIZE);
+        for (List<String> chunk : chunk(keys)) {
+            batch.unlinkKeys(chunk.toArray(new String[0]));
+        }
+        long deleted = sum(batch.execute());
+        invalidateNearCache(keys);
+        return deleted;
+    }
+
+    /**
+     * 删除匹配的所有key，通过SCAN遍历、UNLINK删除，不限速
+     *
+     * @param pattern 匹配模式，例如 user:*
+     * @return 删除的key数量
+     */
+    public long unlinkByPattern(String pattern) {
+        return unlinkByPattern(pattern, DEFAULT_SCAN_COUNT, 0);
+    }
+
+    /**
+     * 删除匹配的所有key，通过SCAN遍历，每攒够batchSize个key以pipeline的方式发送一次UNLINK，并按maxKeysPerSecond限速，
+     * 避免大量删除时占满redis的后台释放线程和网络。集群模式下不支持
+     *
+     * @param pattern          匹配模式，例如 user:*，不能为空，删除所有key需显式传入*
+     * @param batchSize        每次删除的key数量，同时作为SCAN的COUNT
+     * @param maxKeysPerSecond 每秒最多删除的key数量，小于等于0表示不限速
+     * @return 删除的key数量
+     */
+    public long unlinkByPattern(String pattern, int batchSize, int maxKeysPerSecond) {
+        if (StringUtils.isEmpty(pattern)) {
+            throw new IllegalArgumentException("pattern must not be empty.");
+        }
+        int size = batchSize > 0 ? batchSize : DEFAULT_SCAN_COUNT;
+        long start = System.nanoTime();
+        long deleted = 0;
+        long scanned = 0;
+        List<String> keys = new ArrayList<>(size);
+        try (Stream<String> stream = scanKeys(pattern, size)) {
+            Iterator<String> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                keys.add(iterator.next());
+                if (keys.size() < size && iterator.hasNext()) {
+                    continue;
+                }
+                deleted += unlinkKeys(keys);
+                scanned += keys.size();
+                keys.clear();
+                throttle(start, scanned, maxKeysPerSecond);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 限速：已处理count个key时至少要经过 count / maxKeysPerSecond 秒
+     */
+    private static void throttle(long startNanos, long count, int maxKeysPerSecond) {
+        if (maxKeysPerSecond <= 0) {
+            return;
+        }
+        long expectedNanos = count * TimeUnit.SECONDS.toNanos(1) / maxKeysPerSecond;
+        long waitNanos = expectedNanos - (System.nanoTime() - startNanos);
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("unlink by pattern interrupted.", e);
+        }
+    }
+
+    private static long sum(RedisBatchResult result) {
+        long sum = 0;
+        for (Object value : result.getResults()) {
+            if (value instanceof Number) {
+                sum += ((Number) value).longValue();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 通过SCAN增量遍历匹配的key，代替KEYS，不会长时间阻塞redis
+     * 返回的Stream占用一个连接直到关闭，必须在try-with-resources中使用；同一个key可能返回多次，集群模式下不支持
+     *
+     * @param pattern 匹配模式，例如 user:*
+     */
+    public Stream<String> scanKeys(String pattern) {
+        return scanKeys(pattern, DEFAULT_SCAN_COUNT);
+    }
+
+    /**
+     * 通过SCAN增量遍历匹配的key
+     *
+     * @param pattern 匹配模式，例如 user:*
+     * @param count   每次迭代建议返回的数量
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<String> scanKeys(String pattern, int count) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        ScanOptions options = scanOptions(pattern, count);
+        Cursor<String> cursor = redisTemplate.executeWithStickyConnection(
+                (RedisCallback<Cursor<String>>) connection -> new ConvertingCursor<>(connection.scan(options), keySerializer::deserialize));
+        return toStream(cursor);
     }
 
     /**
@@ -173,10 +723,18 @@ public class RedisOperationHelper {
      * @param expire 过期时间
      */
     public void strSet(String key, String value, long expire, TimeUnit timeUnit) {
-        getValueOperations().set(key, value);
-        if (expire != NOT_EXPIRE) {
-            setExpire(key, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        if (expire == NOT_EXPIRE) {
+            strSet(key, value);
+            return;
         }
+        RedisValueCompressor compressor = getCompressor();
+        if (compressor != null) {
+            setRaw(key, compress(compressor, key, value), expire, timeUnit);
+            return;
+        }
+        // SET key value PX，写入和过期时间在一条命令内完成
+        getValueOperations().set(key, value, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        invalidateNearCache(key);
     }
 
     /**
@@ -186,7 +744,13 @@ public class RedisOperationHelper {
      * @param value value
      */
     public void strSet(String key, String value) {
+        RedisValueCompressor compressor = getCompressor();
+        if (compressor != null) {
+            setRaw(key, compress(compressor, key, value), NOT_EXPIRE, null);
+            return;
+        }
         getValueOperations().set(key, value);
+        invalidateNearCache(key);
     }
 
     /**
@@ -195,6 +759,13 @@ public class RedisOperationHelper {
      * @param key key
      */
     public String strGet(String key) {
+        RedisValueCompressor compressor = getCompressor();
+        if (compressor != null) {
+            return decompress(compressor, getRaw(key, NOT_EXPIRE, null));
+        }
+        if (nearCache != null) {
+            return nearCache.strGet(key);
+        }
         return getValueOperations().get(key);
     }
 
@@ -205,11 +776,15 @@ public class RedisOperationHelper {
      * @param expire 过期时间
      */
     public String strGet(String key, long expire, TimeUnit timeUnit) {
-        String value = getValueOperations().get(key);
-        if (expire != NOT_EXPIRE) {
-            setExpire(key, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        RedisValueCompressor compressor = getCompressor();
+        if (compressor != null) {
+            return decompress(compressor, getRaw(key, expire, timeUnit));
+        }
+        if (expire == NOT_EXPIRE) {
+            return getValueOperations().get(key);
         }
-        return value;
+        // GET和PEXPIRE以pipeline的方式在一次网络往返内完成
+        return batch().strGet(key).setExpire(key, expire, timeUnit).execute().get(0);
     }
 
     /**
@@ -219,8 +794,15 @@ public class RedisOperationHelper {
      * @param clazz 待转换的类Class
      */
     public <T> T strGet(String key, Class<T> clazz) {
-        String value = getValueOperations().get(key);
-        return value == null ? null : fromJson(value, clazz);
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        // 近端缓存保存的是字符串，只用于不压缩的json
+        if (!isRawValue(codec, compressor) && (nearCache != null || getByteRedisTemplate() == null)) {
+            String value = strGet(key);
+            return value == null ? null : fromJson(value, clazz);
+        }
+        // 直接从返回的字节解析，不经过String
+        return decodeValue(codec, compressor, getRaw(key, NOT_EXPIRE, null), clazz);
     }
 
     /**
@@ -231,11 +813,13 @@ public class RedisOperationHelper {
      * @param expire 过期时间
      */
     public <T> T strGet(String key, Class<T> clazz, long expire, TimeUnit timeUnit) {
-        String value = getValueOperations().get(key);
-        if (expire != NOT_EXPIRE) {
-            setExpire(key, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        if (!isRawValue(codec, compressor)) {
+            String value = strGet(key, expire, timeUnit);
+            return value == null ? null : fromJson(value, clazz);
         }
-        return value == null ? null : fromJson(value, clazz);
+        return decodeValue(codec, compressor, getRaw(key, expire, timeUnit), clazz);
     }
 
     /**
@@ -246,7 +830,142 @@ public class RedisOperationHelper {
      * @param end   结束的位置
      */
     public String strGet(String key, Long start, Long end) {
-        return getValueOperations().get(key, start, end);
+        RedisValueCompressor compressor = getCompressor();
+        if (compressor == null) {
+            return getValueOperations().get(key, start, end);
+        }
+        // 压缩后的字节不能按位置截取，读取整个值解压后按GETRANGE的规则截取
+        byte[] value = getRaw(key, NOT_EXPIRE, null);
+        return range(value == null ? new byte[0] : compressor.decompress(value), start, end);
+    }
+
+    /**
+     * 与GETRANGE相同的截取规则：包含start和end，负数表示从末尾倒数，超出范围的部分忽略
+     */
+    private static String range(byte[] value, long start, long end) {
+        int length = value.length;
+        if (start < 0 && end < 0 && start > end) {
+            return "";
+        }
+        start = start < 0 ? Math.max(length + start, 0) : start;
+        end = end < 0 ? Math.max(length + end, 0) : Math.min(end, length - 1L);
+        if (length == 0 || start > end) {
+            return "";
+        }
+        return new String(value, (int) start, (int) (end - start + 1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * String 批量获取值，key过多时按 {@link #MULTI_KEY_CHUNK_SIZE} 拆分为多条MGET在同一个pipeline中发送
+     *
+     * @param keys keys
+     * @return 与keys顺序一致的值，不存在的key对应null
+     */
+    public List<String> strMultiGet(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        RedisValueCompressor compressor = getCompressor();
+        if (compressor != null) {
+            List<String> values = new ArrayList<>(keys.size());
+            multiGetRaw(keys).forEach(value -> values.add(decompress(compressor, value)));
+            return values;
+        }
+        RedisBatch batch = batch();
+        chunk(keys).forEach(batch::strMultiGet);
+        List<String> values = new ArrayList<>(keys.size());
+        for (Object chunkValues : batch.execute().getResults()) {
+            @SuppressWarnings("unchecked")
+            List<String> list = (List<String>) chunkValues;
+            values.addAll(list);
+        }
+        return values;
+    }
+
+    /**
+     * String 批量获取值并转换为对象
+     *
+     * @param keys  keys
+     * @param clazz 待转换的类Class
+     * @return 与keys顺序一致的对象，不存在的key对应null
+     */
+    public <T> List<T> strMultiGet(Collection<String> keys, Class<T> clazz) {
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        if (!isRawValue(codec, compressor)) {
+            List<String> values = strMultiGet(keys);
+            List<T> objects = new ArrayList<>(values.size());
+            for (String value : values) {
+                objects.add(value == null ? null : fromJson(value, clazz));
+            }
+            return objects;
+        }
+        List<byte[]> values = multiGetRaw(keys);
+        List<T> objects = new ArrayList<>(values.size());
+        values.forEach(value -> objects.add(decodeValue(codec, compressor, value, clazz)));
+        return objects;
+    }
+
+    /**
+     * String 批量设置值，按 {@link #MULTI_KEY_CHUNK_SIZE} 拆分为多条MSET在同一个pipeline中发送
+     *
+     * @param map key-value
+     */
+    public void strMultiSet(Map<String, String> map) {
+        strMultiSet(map, NOT_EXPIRE, TimeUnit.SECONDS);
+    }
+
+    /**
+     * String 批量设置值并设置过期时间，MSET不支持过期时间，设置过期时间时每个key一条SET PX，在同一个pipeline中发送
+     *
+     * @param map      key-value
+     * @param expire   过期时间
+     * @param timeUnit 时间单位
+     */
+    public void strMultiSet(Map<String, String> map, long expire, TimeUnit timeUnit) {
+        if (map == null || map.isEmpty()) {
+            return;
+        }
+        RedisValueCompressor compressor = getCompressor();
+        if (compressor != null) {
+            Map<String, byte[]> values = new LinkedHashMap<>(map.size() * 2);
+            map.forEach((key, value) -> values.put(key, compress(compressor, key, value)));
+            multiSetRaw(values, expire, timeUnit);
+            return;
+        }
+        RedisBatch batch = batch();
+        if (expire == NOT_EXPIRE) {
+            chunk(map.keySet()).forEach(keys -> {
+                Map<String, String> chunk = new LinkedHashMap<>(keys.size() * 2);
+                keys.forEach(key -> chunk.put(key, map.get(key)));
+                batch.strMultiSet(chunk);
+            });
+        } else {
+            map.forEach((key, value) -> batch.strSet(key, value, expire, timeUnit));
+        }
+        batch.execute();
+        invalidateNearCache(map.keySet());
+    }
+
+    /**
+     * 批量将对象按编解码（默认json）保存并设置过期时间
+     *
+     * @param map      key-对象
+     * @param expire   过期时间
+     * @param timeUnit 时间单位
+     */
+    public <T> void objectMultiSet(Map<String, T> map, long expire, TimeUnit timeUnit) {
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        if (!isRawValue(codec, compressor)) {
+            Map<String, String> values = new LinkedHashMap<>(map.size() * 2);
+            map.forEach((key, object) -> values.put(key, toJson(object)));
+            strMultiSet(values, expire, timeUnit);
+            return;
+        }
+        Map<String, byte[]> values = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((key, object) -> values.put(key, encodeValue(codec, compressor, key, object)));
+        multiSetRaw(values, expire, timeUnit);
     }
 
     /**
@@ -256,7 +975,11 @@ public class RedisOperationHelper {
      * @param value value
      */
     public Boolean strSetIfAbsent(String key, String value) {
-        return getValueOperations().setIfAbsent(key, value);
+        RedisValueCompressor compressor = getCompressor();
+        Boolean result = compressor == null ? getValueOperations().setIfAbsent(key, value)
+                : getRequiredByteRedisTemplate().opsForValue().setIfAbsent(key, compress(compressor, key, value));
+        invalidateNearCache(key);
+        return result;
     }
 
     /**
@@ -266,7 +989,9 @@ public class RedisOperationHelper {
      * @param delta delta
      */
     public Long strIncrement(String key, Long delta) {
-        return getValueOperations().increment(key, delta);
+        Long result = getValueOperations().increment(key, delta);
+        invalidateNearCache(key);
+        return result;
     }
 
     /**
@@ -289,6 +1014,22 @@ public class RedisOperationHelper {
         return getListOperations().leftPushAll(key, values);
     }
 
+    /**
+     * List 推入数据至列表左端并设置过期时间，一次网络往返内原子完成
+     *
+     * @param key      key
+     * @param values   Collection集合
+     * @param expire   过期时间
+     * @param timeUnit 时间单位
+     */
+    public Long listLeftPushAll(String key, Collection<String> values, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            return listLeftPushAll(key, values);
+        }
+        return RedisExpireScripts.writeAndExpire(redisTemplate, "LPUSH", false, key, expire, timeUnit, 1,
+                new ArrayList<>(values));
+    }
+
     /**
      * List 推入数据至列表右端
      *
@@ -305,8 +1046,24 @@ public class RedisOperationHelper {
      * @param key    key
      * @param values Collection集合
      */
-    public Long listRightPushAll(String key, Collection<String> values) {
-        return getListOperations().rightPushAll(key, values);
+    public Long listRightPushAll(String key, Collection<String> values) {
+        return getListOperations().rightPushAll(key, values);
+    }
+
+    /**
+     * List 推入数据至列表右端并设置过期时间，一次网络往返内原子完成
+     *
+     * @param key      key
+     * @param values   Collection集合
+     * @param expire   过期时间
+     * @param timeUnit 时间单位
+     */
+    public Long listRightPushAll(String key, Collection<String> values, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            return listRightPushAll(key, values);
+        }
+        return RedisExpireScripts.writeAndExpire(redisTemplate, "RPUSH", false, key, expire, timeUnit, 1,
+                new ArrayList<>(values));
     }
 
     /**
@@ -322,6 +1079,7 @@ public class RedisOperationHelper {
 
     /**
      * List 返回列表键key中所有的元素
+     * 大列表请使用 {@link #listScan(String, int)} 分页遍历
      *
      * @param key key
      */
@@ -329,6 +1087,49 @@ public class RedisOperationHelper {
         return listRange(key, 0, listLen(key));
     }
 
+    /**
+     * List 按页（LRANGE）惰性遍历列表的所有元素，每次只在内存中保留一页，不占用连接
+     * 遍历期间列表被修改时可能重复或遗漏元素
+     *
+     * @param key      key
+     * @param pageSize 每页的元素数量
+     */
+    public Stream<String> listScan(String key, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive.");
+        }
+        Iterator<String> iterator = new Iterator<String>() {
+
+            private Iterator<String> page = Collections.emptyIterator();
+
+            private long start = 0;
+
+            private boolean last = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !last) {
+                    List<String> values = listRange(key, start, start + pageSize - 1);
+                    if (values == null || values.size() < pageSize) {
+                        last = true;
+                    }
+                    start += pageSize;
+                    page = values == null ? Collections.emptyIterator() : values.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
     /**
      * List 移除并返回列表最左端的项
      *
@@ -431,6 +1232,22 @@ public class RedisOperationHelper {
         return getSetOperations().add(key, values);
     }
 
+    /**
+     * Set 将数组添加到给定的集合里面并设置过期时间，一次网络往返内原子完成，返回新添加到集合的元素数量
+     *
+     * @param key      key
+     * @param values   values
+     * @param expire   过期时间
+     * @param timeUnit 时间单位
+     */
+    public Long setAdd(String key, String[] values, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            return setAdd(key, values);
+        }
+        return RedisExpireScripts.writeAndExpire(redisTemplate, "SADD", true, key, expire, timeUnit, 1,
+                Arrays.asList(values));
+    }
+
     /**
      * Set 将一个或多个元素添加到给定的集合里面，已经存在于集合的元素会自动的被忽略， 命令返回新添加到集合的元素数量。
      *
@@ -443,6 +1260,7 @@ public class RedisOperationHelper {
 
     /**
      * Set 将返回集合中所有的元素。
+     * 大集合请使用 {@link #setScan(String)} 增量遍历
      *
      * @param key key
      */
@@ -450,6 +1268,26 @@ public class RedisOperationHelper {
         return getSetOperations().members(key);
     }
 
+    /**
+     * Set 通过SSCAN增量遍历集合的元素，代替SMEMBERS，返回的Stream必须在try-with-resources中使用
+     *
+     * @param key key
+     */
+    public Stream<String> setScan(String key) {
+        return setScan(key, null, DEFAULT_SCAN_COUNT);
+    }
+
+    /**
+     * Set 通过SSCAN增量遍历集合的元素
+     *
+     * @param key     key
+     * @param pattern 匹配模式，为空表示所有元素
+     * @param count   每次迭代建议返回的数量
+     */
+    public Stream<String> setScan(String key, String pattern, int count) {
+        return toStream(getSetOperations().scan(key, scanOptions(pattern, count)));
+    }
+
     /**
      * Set 检查给定的元素是否存在于集合
      *
@@ -551,6 +1389,34 @@ public class RedisOperationHelper {
         return getZSetOperations().add(key, value, score);
     }
 
+    /**
+     * ZSet 添加元素并设置过期时间，一次网络往返内原子完成
+     *
+     * @param key      key
+     * @param value    值
+     * @param score    得分
+     * @param expire   过期时间
+     * @param timeUnit 时间单位
+     */
+    public Boolean zSetAdd(String key, String value, double score, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            return zSetAdd(key, value, score);
+        }
+        Long added = RedisExpireScripts.writeAndExpire(redisTemplate, "ZADD", true, key, expire, timeUnit, 2,
+                Arrays.asList(toScoreArg(score), value));
+        return added != null && added > 0;
+    }
+
+    /**
+     * 分值转为ZADD参数，正负无穷与不设置过期时间的写入一样转为+inf、-inf（String.valueOf得到的Infinity会被ZADD拒绝）
+     */
+    private static String toScoreArg(double score) {
+        if (Double.isInfinite(score)) {
+            return score > 0 ? "+inf" : "-inf";
+        }
+        return String.valueOf(score);
+    }
+
     /**
      * ZSet 返回有序集合中，指定元素的分值
      */
@@ -652,6 +1518,23 @@ public class RedisOperationHelper {
         return getZSetOperations().count(key, min, max);
     }
 
+    /**
+     * ZSet 通过ZSCAN增量遍历有序集合的元素和分值（不保证按分值排序），返回的Stream必须在try-with-resources中使用
+     */
+    public Stream<ZSetOperations.TypedTuple<String>> zSetScan(String key) {
+        return zSetScan(key, null, DEFAULT_SCAN_COUNT);
+    }
+
+    /**
+     * ZSet 通过ZSCAN增量遍历有序集合的元素和分值
+     *
+     * @param pattern 匹配模式，为空表示所有元素
+     * @param count   每次迭代建议返回的数量
+     */
+    public Stream<ZSetOperations.TypedTuple<String>> zSetScan(String key, String pattern, int count) {
+        return toStream(getZSetOperations().scan(key, scanOptions(pattern, count)));
+    }
+
     /**
      * Hash 将哈希表 key 中的域 field的值设为 value。如果 key不存在，一个新的哈希表被创建并进行HSET操作。 如果域
      * field已经存在于哈希表中，旧值将被覆盖
@@ -662,6 +1545,26 @@ public class RedisOperationHelper {
      */
     public void hashPut(String key, String hashKey, String value) {
         getHashOperations().put(key, hashKey, value);
+        invalidateNearCache(key);
+    }
+
+    /**
+     * Hash 设置值并设置过期时间，一次网络往返内原子完成
+     *
+     * @param key      key
+     * @param hashKey  hashKey
+     * @param value    value
+     * @param expire   过期时间
+     * @param timeUnit 时间单位
+     */
+    public void hashPut(String key, String hashKey, String value, long expire, TimeUnit timeUnit) {
+        if (expire == NOT_EXPIRE) {
+            hashPut(key, hashKey, value);
+            return;
+        }
+        RedisExpireScripts.writeAndExpire(redisTemplate, "HSET", true, key, expire, timeUnit, 2,
+                Arrays.asList(hashKey, value));
+        invalidateNearCache(key);
     }
 
     /**
@@ -672,6 +1575,7 @@ public class RedisOperationHelper {
      */
     public void hashPutAll(String key, Map<String, String> map) {
         getHashOperations().putAll(key, map);
+        invalidateNearCache(key);
     }
 
     /**
@@ -681,8 +1585,18 @@ public class RedisOperationHelper {
      * @param map map
      */
     public void hashPutAll(String key, Map<String, String> map ,long time , TimeUnit timeUnit) {
-        getHashOperations().putAll(key, map);
-        setExpire(key , time , timeUnit);
+        if (time == NOT_EXPIRE) {
+            hashPutAll(key, map);
+            return;
+        }
+        // HSET和PEXPIRE在一个脚本内原子完成
+        List<String> args = new ArrayList<>(map.size() * 2);
+        map.forEach((hashKey, value) -> {
+            args.add(hashKey);
+            args.add(value);
+        });
+        RedisExpireScripts.writeAndExpire(redisTemplate, "HSET", true, key, time, timeUnit, 2, args);
+        invalidateNearCache(key);
     }
 
     /**
@@ -713,7 +1627,7 @@ public class RedisOperationHelper {
      */
     public Boolean hashPutSerial(String key, String hashKey, byte[] value) {
         RedisSerializer<String> redisSerializer = redisTemplate.getStringSerializer();
-        return redisTemplate.execute((RedisCallback<Boolean>) connection -> {
+        Boolean result = redisTemplate.execute((RedisCallback<Boolean>) connection -> {
             try {
                 return connection.hSet(Objects.requireNonNull(redisSerializer.serialize(key)),
                         Objects.requireNonNull(redisSerializer.serialize(hashKey)), value);
@@ -722,6 +1636,8 @@ public class RedisOperationHelper {
             }
             return Boolean.FALSE;
         });
+        invalidateNearCache(key);
+        return result;
     }
 
     /**
@@ -731,6 +1647,9 @@ public class RedisOperationHelper {
      * @param hashKey hashKey
      */
     public String hashGet(String key, String hashKey) {
+        if (nearCache != null) {
+            return nearCache.hashGet(key, hashKey);
+        }
         return getHashOperations().get(key, hashKey);
     }
 
@@ -746,6 +1665,7 @@ public class RedisOperationHelper {
 
     /**
      * Hash 获取散列Key中所有的键值对
+     * 大key请使用 {@link #hashScan(String)} 增量遍历
      *
      * @param key key
      */
@@ -753,6 +1673,57 @@ public class RedisOperationHelper {
         return getHashOperations().entries(key);
     }
 
+    /**
+     * Hash 批量获取多个key的所有键值对，每个key一条HGETALL，按 {@link #MULTI_KEY_CHUNK_SIZE} 分批以pipeline的方式发送
+     *
+     * @param keys keys
+     * @return key: key，value: 该key的所有键值对，key不存在时为空Map
+     */
+    public Map<String, Map<String, String>> hashGetAllMulti(Collection<String> keys) {
+        Map<String, Map<String, String>> values = new LinkedHashMap<>();
+        if (keys == null || keys.isEmpty()) {
+            return values;
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        RedisBatch batch = batch(MULTI_KEY_CHUNK_SIZE);
+        keyList.forEach(batch::hashGetAll);
+        RedisBatchResult result = batch.execute();
+        for (int i = 0; i < keyList.size(); i++) {
+            Map<String, String> hash = result.get(i);
+            values.put(keyList.get(i), hash == null ? new LinkedHashMap<>() : hash);
+        }
+        return values;
+    }
+
+    /**
+     * Hash 批量获取多个key的所有键值对，并将值转换为对象
+     *
+     * @param keys  keys
+     * @param clazz 值待转换的类Class
+     * @return key: key，value: 该key的所有键值对，key不存在时为空Map
+     */
+    public <T> Map<String, Map<String, T>> hashGetAllMulti(Collection<String> keys, Class<T> clazz) {
+        Map<String, Map<String, T>> values = new LinkedHashMap<>();
+        hashGetAllMulti(keys).forEach((key, hash) -> {
+            Map<String, T> objects = new LinkedHashMap<>(hash.size() * 2);
+            hash.forEach((hashKey, value) -> objects.put(hashKey, value == null ? null : fromJson(value, clazz)));
+            values.put(key, objects);
+        });
+        return values;
+    }
+
+    /**
+     * 按 {@link #MULTI_KEY_CHUNK_SIZE} 拆分key
+     */
+    private static List<List<String>> chunk(Collection<String> keys) {
+        List<String> keyList = new ArrayList<>(keys);
+        List<List<String>> chunks = new ArrayList<>((keyList.size() + MULTI_KEY_CHUNK_SIZE - 1) / MULTI_KEY_CHUNK_SIZE);
+        for (int from = 0; from < keyList.size(); from += MULTI_KEY_CHUNK_SIZE) {
+            chunks.add(keyList.subList(from, Math.min(from + MULTI_KEY_CHUNK_SIZE, keyList.size())));
+        }
+        return chunks;
+    }
+
     /**
      * Hash 查看哈希表 key 中，给定域 field是否存在
      *
@@ -765,6 +1736,7 @@ public class RedisOperationHelper {
 
     /**
      * Hash 返回哈希表 key 中的所有域
+     * 大key请使用 {@link #hashScan(String)} 增量遍历
      *
      * @param key key
      */
@@ -774,6 +1746,7 @@ public class RedisOperationHelper {
 
     /**
      * Hash 返回散列键 key 中，所有域的值
+     * 大key请使用 {@link #hashScan(String)} 增量遍历
      *
      * @param key key
      */
@@ -781,6 +1754,26 @@ public class RedisOperationHelper {
         return getHashOperations().values(key);
     }
 
+    /**
+     * Hash 通过HSCAN增量遍历散列的键值对，代替HGETALL、HKEYS、HVALS，返回的Stream必须在try-with-resources中使用
+     *
+     * @param key key
+     */
+    public Stream<Map.Entry<String, String>> hashScan(String key) {
+        return hashScan(key, null, DEFAULT_SCAN_COUNT);
+    }
+
+    /**
+     * Hash 通过HSCAN增量遍历散列的键值对
+     *
+     * @param key     key
+     * @param pattern 域的匹配模式，为空表示所有域
+     * @param count   每次迭代建议返回的数量
+     */
+    public Stream<Map.Entry<String, String>> hashScan(String key, String pattern, int count) {
+        return toStream(getHashOperations().scan(key, scanOptions(pattern, count)));
+    }
+
     /**
      * Hash 返回散列键 key中指定Field的域的值
      *
@@ -808,6 +1801,7 @@ public class RedisOperationHelper {
      */
     public void hashDelete(String key, Object... hashKeys) {
         getHashOperations().delete(key, hashKeys);
+        invalidateNearCache(key);
     }
 
     /**
@@ -818,6 +1812,87 @@ public class RedisOperationHelper {
      */
     public void hashRemove(String key, Object[] hashKeys) {
         getHashOperations().delete(key, hashKeys);
+        invalidateNearCache(key);
+    }
+
+    private static ScanOptions scanOptions(String pattern, int count) {
+        ScanOptions.ScanOptionsBuilder builder = ScanOptions.scanOptions().count(count > 0 ? count : DEFAULT_SCAN_COUNT);
+        if (StringUtils.isNotEmpty(pattern)) {
+            builder.match(pattern);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 将游标包装为Stream，关闭Stream时关闭游标并归还连接
+     */
+    private static <T> Stream<T> toStream(Cursor<T> cursor) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } catch (IOException e) {
+                        logger.warn("close redis cursor failed.", e);
+                    }
+                });
+    }
+
+    /**
+     * 执行 {@link RedisScriptRegistry} 注册时返回的Lua脚本（EVALSHA，脚本不存在时自动EVAL），
+     * KEYS、ARGV由注册时绑定的方法从参数生成。
+     * 多步的读-改-写可以合并为一个脚本，只需一次网络往返且不会被其他客户端的命令打断
+     *
+     * @param script    注册时返回的脚本
+     * @param parameter 参数
+     */
+    public <P, T> T eval(RedisScriptHandle<P, T> script, P parameter) {
+        return eval(script.getScript(), script.keys(parameter), script.args(parameter));
+    }
+
+    /**
+     * 按名称执行 {@link RedisScriptRegistry} 中注册的Lua脚本（EVALSHA，脚本不存在时自动EVAL）
+     *
+     * @param name 脚本名称
+     * @param keys 脚本中的KEYS
+     * @param args 脚本中的ARGV，字符串、数字、布尔值、枚举直接转为字符串，其他对象转为JSON
+     * @param <T>  返回值类型，与注册时指定的类型一致
+     * @deprecated 返回值类型不受检查，使用注册时返回的 {@link RedisScriptHandle}，见 {@link #eval(RedisScriptHandle, Object)}
+     */
+    @Deprecated
+    public <T> T eval(String name, List<String> keys, Object... args) {
+        RedisScript<T> script = RedisScriptRegistry.get(name);
+        return eval(script, keys, args);
+    }
+
+    /**
+     * 执行Lua脚本（EVALSHA，脚本不存在时自动EVAL）
+     *
+     * @param script 脚本
+     * @param keys   脚本中的KEYS
+     * @param args   脚本中的ARGV，字符串、数字、布尔值、枚举直接转为字符串，其他对象转为JSON
+     */
+    public <T> T eval(RedisScript<T> script, List<String> keys, Object... args) {
+        if (redisTemplate instanceof ManagedRedisTemplate) {
+            RedisScriptRegistry.Loader scriptLoader = ((ManagedRedisTemplate<?, ?>) redisTemplate).getScriptLoader();
+            if (scriptLoader != null) {
+                scriptLoader.ensureLoaded(redisTemplate);
+            }
+        }
+        Object[] argv = new Object[args == null ? 0 : args.length];
+        for (int i = 0; i < argv.length; i++) {
+            argv[i] = toScriptArg(args[i]);
+        }
+        return redisTemplate.execute(script, keys == null ? Collections.emptyList() : keys, argv);
+    }
+
+    private static String toScriptArg(Object arg) {
+        if (arg == null) {
+            return StringUtils.EMPTY;
+        }
+        if (arg instanceof CharSequence || arg instanceof Number || arg instanceof Boolean || arg instanceof Enum) {
+            return arg.toString();
+        }
+        return toJson(arg);
     }
 
     /**
@@ -832,12 +1907,46 @@ public class RedisOperationHelper {
             return String.valueOf(object);
         }
         try {
-            return objectMapper.writeValueAsString(object);
+            return JSON_CODEC.writeValueAsString(object);
         } catch (JsonProcessingException e) {
             return StringUtils.EMPTY;
         }
     }
 
+    /**
+     * Object直接转成JSON字节，与 {@link #toJson(Object)} 的结果一致（字符串不加引号）
+     */
+    public static <T> byte[] toJsonBytes(T object) {
+        if (object == null) {
+            return new byte[0];
+        }
+        if (object instanceof String) {
+            return ((String) object).getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return JSON_CODEC.writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * JSON字节直接转成Object
+     */
+    public static <T> T fromJson(byte[] json, Class<T> clazz) {
+        if (json == null || json.length == 0 || clazz == null) {
+            return null;
+        }
+        try {
+            return JSON_CODEC.readValue(json, clazz);
+        } catch (Exception e) {
+            if (logger.isErrorEnabled()) {
+                logger.error(e.getMessage(), e);
+            }
+            return null;
+        }
+    }
+
     /**
      * JSON数据，转成Object
      */
@@ -846,7 +1955,7 @@ public class RedisOperationHelper {
             return null;
         }
         try {
-            return objectMapper.readValue(json, clazz);
+            return JSON_CODEC.readValue(json, clazz);
         } catch (Exception e) {
             if (logger.isErrorEnabled()) {
                 logger.error(e.getMessage(), e);
@@ -863,7 +1972,7 @@ public class RedisOperationHelper {
             return null;
         }
         try {
-            return objectMapper.readValue(json, valueTypeRef);
+            return JSON_CODEC.readValue(json, valueTypeRef);
         } catch (Exception e) {
             if (logger.isErrorEnabled()) {
                 logger.error(e.getMessage(), e);
@@ -876,9 +1985,8 @@ public class RedisOperationHelper {
      * JSON数据，转成 List&lt;Object&gt;
      */
     public static <T> List<T> fromJsonList(String json, Class<T> clazz) {
-        JavaType javaType = objectMapper.getTypeFactory().constructParametricType(List.class, clazz);
         try {
-            return objectMapper.readValue(json, javaType);
+            return JSON_CODEC.readList(json, clazz);
         } catch (IOException e) {
             logger.error(e.getMessage(), e);
         }
@@ -886,12 +1994,291 @@ public class RedisOperationHelper {
     }
 
     /**
-     * 将对象直接以json数据不设置过期时间的方式保存
+     * 将对象按编解码（默认json）不设置过期时间的方式保存
      *
      * @param key    键
      * @param object object
      */
     public <T> void objectSet(String key, T object) {
-        strSet(key, toJson(object));
+        RedisValueCodec codec = getValueCodec();
+        RedisValueCompressor compressor = getCompressor();
+        if (!isRawValue(codec, compressor) && getByteRedisTemplate() == null) {
+            strSet(key, toJson(object));
+            return;
+        }
+        // 直接序列化为字节写入，不经过String
+        setRaw(key, encodeValue(codec, compressor, key, object), NOT_EXPIRE, null);
+    }
+
+    // =======================================以下是大值分块存储===================================
+
+    /**
+     * 分块存储字符串，见 {@link #chunkedSet(String, byte[], long, TimeUnit)}
+     */
+    public void chunkedSet(String key, String value, long expire, TimeUnit timeUnit) {
+        chunkedSet(key, value.getBytes(StandardCharsets.UTF_8), expire, timeUnit);
+    }
+
+    /**
+     * 分块存储对象，按编解码序列化，见 {@link #chunkedSet(String, byte[], long, TimeUnit)}
+     */
+    public <T> void chunkedObjectSet(String key, T object, long expire, TimeUnit timeUnit) {
+        chunkedSet(key, encode(getValueCodec(), object), expire, timeUnit);
+    }
+
+    /**
+     * 分块存储大值，避免一条命令传输几MB的值阻塞redis事件循环、造成主从复制延迟。
+     * key本身是一个hash（manifest），记录版本号、分块数量和总长度，值按chunkSize拆分后存放在
+     * <i>{key}:chunk:版本号:序号</i> 中（key已包含hash tag时不再添加），同一个值的分块在集群中落在同一个slot，
+     * 不超过一个分块的值直接存放在manifest中。
+     * 先在一个pipeline中写入新版本的分块，再通过Lua脚本原子地替换manifest并返回被替换的版本，
+     * 最后删除被替换版本的分块，并发写入同一个key时每个版本的分块都由替换它的写入删除，不会残留也不会误删。
+     * 写入分块或替换manifest失败时会尽量删除新版本的分块，但进程在两步之间退出或删除也失败时，新版本的分块会残留，
+     * 不过期（{@link #NOT_EXPIRE}）时需要按 <i>{key}:chunk:*</i> 扫描清理。
+     * manifest和分块使用相同的过期时间。开启了压缩时先压缩整个值再拆分
+     *
+     * @param key      key
+     * @param value    值
+     * @param expire   过期时间，{@link #NOT_EXPIRE} 表示不过期
+     * @param timeUnit 时间单位
+     */
+    public void chunkedSet(String key, byte[] value, long expire, TimeUnit timeUnit) {
+        RedisTemplate<String, byte[]> template = getRequiredByteRedisTemplate();
+        RedisValueCompressor compressor = getCompressor();
+        byte[] stored = compressor == null ? value : compressor.compress(key, value);
+
+        String version = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        int chunks = stored.length <= chunkSize ? 0 : (stored.length + chunkSize - 1) / chunkSize;
+        long millis = expire == NOT_EXPIRE ? NOT_EXPIRE : (timeUnit == null ? TimeUnit.SECONDS : timeUnit).toMillis(expire);
+        List<?> replaced;
+        try {
+            if (chunks > 0) {
+                List<Function<RedisConnection, Object>> commands = new ArrayList<>(chunks);
+                for (int i = 0; i < chunks; i++) {
+                    byte[] chunkKey = rawKey(chunkKey(key, version, i));
+                    byte[] chunk = Arrays.copyOfRange(stored, i * chunkSize, Math.min((i + 1) * chunkSize, stored.length));
+                    commands.add(millis == NOT_EXPIRE ? connection -> connection.set(chunkKey, chunk)
+                            : connection -> connection.pSetEx(chunkKey, millis, chunk));
+                }
+                executeRaw(template, commands);
+            }
+            byte[][] keysAndArgs = {rawKey(key), rawKey(version), rawKey(String.valueOf(chunks)),
+                    rawKey(String.valueOf(stored.length)), rawKey(String.valueOf(millis)), chunks == 0 ? stored : new byte[0]};
+            // jedis不支持在pipeline中执行脚本，分块写入完成后单独执行
+            replaced = template.execute((RedisCallback<List<?>>) connection ->
+                    connection.eval(CHUNK_MANIFEST_SWAP, ReturnType.MULTI, 1, keysAndArgs));
+        } catch (RuntimeException e) {
+            unlinkOrphanChunks(template, key, version, chunks, e);
+            throw e;
+        }
+        ChunkManifest previous = toChunkManifest(replaced);
+        if (previous != null && !previous.version.equals(version)) {
+            List<Function<RedisConnection, Object>> unlinks = new ArrayList<>();
+            previous.chunkKeys(key).forEach(chunkKeys -> unlinks.add(connection -> connection.unlink(chunkKeys)));
+            if (!unlinks.isEmpty()) {
+                executeRaw(template, unlinks);
+            }
+        }
+        invalidateNearCache(key);
+    }
+
+    /**
+     * 写入分块或替换manifest失败时删除新版本的分块。超时等情况下脚本可能已经执行成功，manifest已经指向新版本时不删除
+     */
+    private static void unlinkOrphanChunks(RedisTemplate<String, byte[]> template, String key, String version, int chunks,
+                                           RuntimeException error) {
+        if (chunks == 0) {
+            return;
+        }
+        try {
+            ChunkManifest current = readChunkManifest(template, rawKey(key));
+            if (current != null && current.version.equals(version)) {
+                return;
+            }
+            List<Function<RedisConnection, Object>> unlinks = new ArrayList<>();
+            new ChunkManifest(version, chunks, 0, null).chunkKeys(key)
+                    .forEach(chunkKeys -> unlinks.add(connection -> connection.unlink(chunkKeys)));
+            executeRaw(template, unlinks);
+        } catch (RuntimeException e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    /**
+     * 读取分块存储的字符串
+     *
+     * @return 不存在时返回null
+     */
+    public String chunkedGet(String key) {
+        byte[] value = chunkedGetBytes(key);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取分块存储的对象，按编解码反序列化
+     *
+     * @return 不存在时返回null
+     */
+    public <T> T chunkedGet(String key, Class<T> clazz) {
+        return decode(getValueCodec(), chunkedGetBytes(key), clazz);
+    }
+
+    /**
+     * 读取分块存储的值，所有分块在一个pipeline中读取，每条命令只返回一个分块。
+     * 读取过程中值被覆盖导致旧版本的分块不存在时重新读取一次
+     *
+     * @return 不存在时返回null
+     */
+    public byte[] chunkedGetBytes(String key) {
+        RedisTemplate<String, byte[]> template = getRequiredByteRedisTemplate();
+        byte[] rawKey = rawKey(key);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            ChunkManifest manifest = readChunkManifest(template, rawKey);
+            if (manifest == null) {
+                return null;
+            }
+            byte[] stored = manifest.chunks == 0 ? manifest.data : readChunks(template, key, manifest);
+            if (stored != null) {
+                RedisValueCompressor compressor = getCompressor();
+                return compressor == null ? stored : compressor.decompress(stored);
+            }
+        }
+        throw new IllegalStateException("chunked value " + key + " changed while reading.");
+    }
+
+    /**
+     * 以流的方式读取分块存储的值，按需读取分块，内存中只保留少量分块
+     *
+     * @return 不存在时返回null
+     */
+    public InputStream chunkedStream(String key) throws IOException {
+        RedisTemplate<String, byte[]> template = getRequiredByteRedisTemplate();
+        ChunkManifest manifest = readChunkManifest(template, rawKey(key));
+        if (manifest == null) {
+            return null;
+        }
+        InputStream in = manifest.chunks == 0 ? new ByteArrayInputStream(manifest.data)
+                : new ChunkedValueInputStream(template, index -> rawKey(chunkKey(key, manifest.version, index)),
+                manifest.chunks, CHUNK_FETCH_SIZE);
+        return getCompressor() == null ? in : RedisValueCompressor.decompress(in);
+    }
+
+    /**
+     * 删除分块存储的值，manifest和所有分块一起UNLINK
+     *
+     * @return 是否存在
+     */
+    public Boolean chunkedDelete(String key) {
+        RedisTemplate<String, byte[]> template = getRequiredByteRedisTemplate();
+        byte[] rawKey = rawKey(key);
+        ChunkManifest manifest = readChunkManifest(template, rawKey);
+        if (manifest == null) {
+            return Boolean.FALSE;
+        }
+        List<Function<RedisConnection, Object>> commands = new ArrayList<>();
+        commands.add(connection -> connection.unlink(rawKey));
+        manifest.chunkKeys(key).forEach(chunkKeys -> commands.add(connection -> connection.unlink(chunkKeys)));
+        executeRaw(template, commands);
+        invalidateNearCache(key);
+        return Boolean.TRUE;
+    }
+
+    private static String chunkKey(String key, String version, int index) {
+        return hashTag(key) + ":chunk:" + version + ":" + index;
+    }
+
+    /**
+     * 分块key的前缀：key已包含hash tag时保持不变，否则把整个key作为hash tag，
+     * 同一个值的分块落在同一个slot（不含hash tag的key与manifest也在同一个slot），可以一条UNLINK删除
+     */
+    private static String hashTag(String key) {
+        int start = key.indexOf('{');
+        if (start >= 0 && key.indexOf('}', start + 1) > start + 1) {
+            return key;
+        }
+        return "{" + key + "}";
+    }
+
+    /**
+     * 替换manifest的脚本返回的被替换版本号和分块数量
+     *
+     * @return 替换前不存在manifest时返回null
+     */
+    private static ChunkManifest toChunkManifest(List<?> previous) {
+        if (previous == null || previous.size() < 2 || previous.get(0) == null || previous.get(1) == null) {
+            return null;
+        }
+        return new ChunkManifest(new String((byte[]) previous.get(0), StandardCharsets.UTF_8),
+                Integer.parseInt(new String((byte[]) previous.get(1), StandardCharsets.UTF_8)), 0, null);
+    }
+
+    private static ChunkManifest readChunkManifest(RedisTemplate<String, byte[]> template, byte[] rawKey) {
+        List<byte[]> fields = template.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hMGet(rawKey, MANIFEST_VERSION, MANIFEST_CHUNKS, MANIFEST_SIZE, MANIFEST_DATA));
+        if (fields == null || fields.get(0) == null || fields.get(1) == null) {
+            return null;
+        }
+        return new ChunkManifest(new String(fields.get(0), StandardCharsets.UTF_8),
+                Integer.parseInt(new String(fields.get(1), StandardCharsets.UTF_8)),
+                fields.get(2) == null ? 0 : Integer.parseInt(new String(fields.get(2), StandardCharsets.UTF_8)),
+                fields.get(3));
+    }
+
+    /**
+     * 在一个pipeline中读取所有分块并拼接
+     *
+     * @return 有分块不存在（值已被覆盖）时返回null
+     */
+    private static byte[] readChunks(RedisTemplate<String, byte[]> template, String key, ChunkManifest manifest) {
+        List<Function<RedisConnection, Object>> commands = new ArrayList<>(manifest.chunks);
+        for (int i = 0; i < manifest.chunks; i++) {
+            byte[] chunkKey = rawKey(chunkKey(key, manifest.version, i));
+            commands.add(connection -> connection.get(chunkKey));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(manifest.size);
+        for (Object chunk : executeRaw(template, commands)) {
+            if (chunk == null) {
+                return null;
+            }
+            byte[] bytes = (byte[]) chunk;
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 分块存储的manifest
+     */
+    private static final class ChunkManifest {
+
+        private final String version;
+
+        private final int chunks;
+
+        private final int size;
+
+        private final byte[] data;
+
+        private ChunkManifest(String version, int chunks, int size, byte[] data) {
+            this.version = version;
+            this.chunks = chunks;
+            this.size = size;
+            this.data = data == null ? new byte[0] : data;
+        }
+
+        /**
+         * 所有分块的key，按 {@link #MULTI_KEY_CHUNK_SIZE} 分组
+         */
+        private List<byte[][]> chunkKeys(String key) {
+            List<byte[][]> groups = new ArrayList<>();
+            for (int from = 0; from < chunks; from += MULTI_KEY_CHUNK_SIZE) {
+                byte[][] group = new byte[Math.min(MULTI_KEY_CHUNK_SIZE, chunks - from)][];
+                for (int i = 0; i < group.length; i++) {
+                    group[i] = rawKey(chunkKey(key, version, from + i));
+                }
+                groups.add(group);
+            }
+            return groups;
+        }
     }
 }
@@ -0,0 +1,272 @@
+package com.multiple.data.source.database.helper;
+
+import com.multiple.data.source.constant.EnhanceRedisConstants;
+import com.multiple.data.source.database.util.EnvironmentUtil;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 跨数据源、跨db分发执行
+ * 对一组目标（数据源 + db）执行同一个回调，目标之间在固定大小的线程池中并行执行，每个目标单独计算超时，
+ * 可以等全部完成后按目标顺序汇总返回，也可以按完成顺序逐个处理。
+ * <pre>
+ * Map&lt;RedisTarget, RedisTargetResult&lt;Long&gt;&gt; sizes = redisScatterGather.execute(
+ *         redisScatterGather.targets(0, 1, 2),
+ *         redisTemplate -&gt; redisTemplate.execute(RedisServerCommands::dbSize));
+ * </pre>
+ * 超时的目标立即以 {@link TimeoutException} 返回，已经发出的命令无法撤回，会继续占用工作线程直到客户端的命令超时。
+ * 回调中不要再调用该组件（工作线程会互相等待）
+ */
+public class RedisScatterGather implements ApplicationContextAware, DisposableBean {
+
+    /**
+     * 执行回调的线程池
+     */
+    private final ExecutorService executor;
+
+    /**
+     * 超时计时器
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * 每个目标的默认超时时长
+     */
+    private final Duration timeout;
+
+    private ApplicationContext applicationContext;
+
+    /**
+     * @param parallelism 并行执行的线程数，小于等于0时为cpu核数的两倍
+     * @param timeout     每个目标的默认超时时长，为空表示不超时
+     */
+    public RedisScatterGather(int parallelism, Duration timeout) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger index = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "redis-scatter-gather-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "redis-scatter-gather-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 正常完成的目标取消计时，不在队列中堆积
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.timer = scheduler;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 所有数据源（包括默认数据源）的指定db
+     *
+     * @param databases db号，不指定则为每个数据源配置文件中指定的db
+     */
+    public List<RedisTarget> targets(int... databases) {
+        Set<String> dataSourceNames = new LinkedHashSet<>();
+        dataSourceNames.add(EnhanceRedisConstants.DefaultRedisHelperName.DEFAULT);
+        dataSourceNames.addAll(EnvironmentUtil.loadRedisDataSourceName(applicationContext.getEnvironment()));
+        return targets(dataSourceNames, databases);
+    }
+
+    /**
+     * 指定数据源的指定db
+     *
+     * @param dataSourceNames 数据源名称，<i>default</i> 表示默认数据源
+     * @param databases       db号，不指定则为每个数据源配置文件中指定的db
+     */
+    public static List<RedisTarget> targets(Collection<String> dataSourceNames, int... databases) {
+        List<RedisTarget> targets = new ArrayList<>();
+        for (String dataSourceName : dataSourceNames) {
+            if (databases == null || databases.length == 0) {
+                targets.add(RedisTarget.of(dataSourceName));
+                continue;
+            }
+            for (int database : databases) {
+                targets.add(RedisTarget.of(dataSourceName, database));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * 并行执行并等待所有目标完成，使用默认超时时长
+     *
+     * @return 每个目标的结果，顺序与targets一致
+     */
+    public <T> Map<RedisTarget, RedisTargetResult<T>> execute(Collection<RedisTarget> targets,
+                                                              Function<RedisTemplate<String, String>, T> callback) {
+        return execute(targets, callback, timeout);
+    }
+
+    /**
+     * 并行执行并等待所有目标完成
+     *
+     * @param timeout 每个目标的超时时长，从目标开始执行时计算，为空表示不超时
+     * @return 每个目标的结果，顺序与targets一致
+     */
+    public <T> Map<RedisTarget, RedisTargetResult<T>> execute(Collection<RedisTarget> targets,
+                                                              Function<RedisTemplate<String, String>, T> callback,
+                                                              Duration timeout) {
+        Map<RedisTarget, RedisTargetResult<T>> results = new LinkedHashMap<>();
+        targets.forEach(target -> results.put(target, null));
+        stream(targets, callback, timeout, result -> results.put(result.getTarget(), result));
+        return results;
+    }
+
+    /**
+     * 并行执行，在当前线程按完成顺序逐个处理结果，使用默认超时时长
+     */
+    public <T> void stream(Collection<RedisTarget> targets, Function<RedisTemplate<String, String>, T> callback,
+                           Consumer<RedisTargetResult<T>> consumer) {
+        stream(targets, callback, timeout, consumer);
+    }
+
+    /**
+     * 并行执行，在当前线程按完成顺序逐个处理结果，所有目标都处理完后返回
+     *
+     * @param timeout  每个目标的超时时长，从目标开始执行时计算，为空表示不超时
+     * @param consumer 结果处理，每个目标只调用一次
+     */
+    public <T> void stream(Collection<RedisTarget> targets, Function<RedisTemplate<String, String>, T> callback,
+                           Duration timeout, Consumer<RedisTargetResult<T>> consumer) {
+        Assert.notNull(callback, "callback must not be null.");
+        Assert.notNull(consumer, "consumer must not be null.");
+        Set<RedisTarget> distinctTargets = new LinkedHashSet<>(targets);
+        BlockingQueue<RedisTargetResult<T>> completed = new LinkedBlockingQueue<>();
+        for (RedisTarget target : distinctTargets) {
+            RedisHelper redisHelper;
+            try {
+                // 在当前线程从容器获取RedisHelper
+                redisHelper = getRedisHelper(target.getDataSourceName());
+            } catch (RuntimeException e) {
+                completed.add(new RedisTargetResult<>(target, null, e, 0));
+                continue;
+            }
+            submit(target, redisHelper, callback, timeout, completed);
+        }
+        try {
+            for (int i = 0; i < distinctTargets.size(); i++) {
+                consumer.accept(completed.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("redis scatter-gather interrupted.", e);
+        }
+    }
+
+    /**
+     * 在每个目标上删除匹配的所有key（SCAN + UNLINK），目标之间并行执行，每个目标单独限速，不超时
+     *
+     * @param targets          目标，例如 {@link #targets(int...)}
+     * @param pattern          匹配模式，例如 user:*
+     * @param batchSize        每次删除的key数量
+     * @param maxKeysPerSecond 每个目标每秒最多删除的key数量，小于等于0表示不限速
+     * @return 每个目标删除的key数量
+     */
+    public Map<RedisTarget, RedisTargetResult<Long>> unlinkByPattern(Collection<RedisTarget> targets, String pattern,
+                                                                     int batchSize, int maxKeysPerSecond) {
+        return execute(targets, redisTemplate -> new RedisOperationHelper(redisTemplate)
+                .unlinkByPattern(pattern, batchSize, maxKeysPerSecond), null);
+    }
+
+    /**
+     * 提交一个目标，执行完成或超时（先发生的一个）时放入completed
+     */
+    private <T> void submit(RedisTarget target, RedisHelper redisHelper, Function<RedisTemplate<String, String>, T> callback,
+                            Duration timeout, BlockingQueue<RedisTargetResult<T>> completed) {
+        AtomicBoolean done = new AtomicBoolean();
+        Runnable task = () -> {
+            long start = System.currentTimeMillis();
+            ScheduledFuture<?> timeoutFuture = null;
+            if (timeout != null && !timeout.isZero() && !timeout.isNegative()) {
+                timeoutFuture = timer.schedule(() -> {
+                    if (done.compareAndSet(false, true)) {
+                        completed.add(new RedisTargetResult<>(target, null,
+                                new TimeoutException("redis target " + target + " timeout after " + timeout.toMillis() + " ms."),
+                                System.currentTimeMillis() - start));
+                    }
+                }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            T value = null;
+            Throwable error = null;
+            try {
+                value = callback.apply(getRedisTemplate(redisHelper, target));
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                if (timeoutFuture != null) {
+                    timeoutFuture.cancel(false);
+                }
+            }
+            if (done.compareAndSet(false, true)) {
+                completed.add(new RedisTargetResult<>(target, value, error, System.currentTimeMillis() - start));
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            completed.add(new RedisTargetResult<>(target, null, e, 0));
+        }
+    }
+
+    /**
+     * 目标对应的RedisTemplate，指定db时可能需要创建连接工厂，在工作线程中执行
+     */
+    private static RedisTemplate<String, String> getRedisTemplate(RedisHelper redisHelper, RedisTarget target) {
+        return target.getDatabase() == null ? redisHelper.getRedisTemplate() : redisHelper.opsOtherDb(target.getDatabase());
+    }
+
+    /**
+     * 获取数据源的RedisHelper，<i>default</i> 表示默认数据源
+     */
+    private RedisHelper getRedisHelper(String name) {
+        String beanName = EnhanceRedisConstants.DefaultRedisHelperName.DEFAULT.equals(name)
+                ? EnhanceRedisConstants.DefaultRedisHelperName.REDIS_HELPER
+                : name + EnhanceRedisConstants.MultiSource.REDIS_HELPER;
+        if (!applicationContext.containsBean(beanName)) {
+            throw new IllegalArgumentException("redis datasource " + name + " not found.");
+        }
+        return applicationContext.getBean(beanName, RedisHelper.class);
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,62 @@
+package com.multiple.data.source.database.helper;
+
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 注册时绑定了KEYS、ARGV生成方式和返回值类型的Lua脚本，通过 {@link RedisOperationHelper#eval(RedisScriptHandle, Object)} 按参数对象执行：
+ * <pre>
+ * static final RedisScriptHandle&lt;Transfer, Long&gt; TRANSFER = RedisScriptRegistry.register("transfer", LUA, Long.class,
+ *         transfer -&gt; Arrays.asList(transfer.getFrom(), transfer.getTo()),
+ *         transfer -&gt; Collections.singletonList(transfer.getAmount()));
+ * Long balance = new RedisOperationHelper(redisHelper.opsDbOne()).eval(TRANSFER, new Transfer("a", "b", 10));
+ * </pre>
+ * 调用方不再按名称查找脚本、手工拼装KEYS和ARGV，参数类型和返回值类型由编译器检查
+ *
+ * @param <P> 参数类型
+ * @param <T> 返回值类型
+ */
+public final class RedisScriptHandle<P, T> {
+
+    private final String name;
+
+    private final RedisScript<T> script;
+
+    /**
+     * 由参数生成脚本中的KEYS
+     */
+    private final Function<P, List<String>> keys;
+
+    /**
+     * 由参数生成脚本中的ARGV
+     */
+    private final Function<P, List<?>> args;
+
+    RedisScriptHandle(String name, RedisScript<T> script, Function<P, List<String>> keys, Function<P, List<?>> args) {
+        this.name = name;
+        this.script = script;
+        this.keys = keys;
+        this.args = args;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RedisScript<T> getScript() {
+        return script;
+    }
+
+    List<String> keys(P parameter) {
+        List<String> scriptKeys = keys == null ? null : keys.apply(parameter);
+        return scriptKeys == null ? Collections.emptyList() : scriptKeys;
+    }
+
+    Object[] args(P parameter) {
+        List<?> scriptArgs = args == null ? null : args.apply(parameter);
+        return scriptArgs == null ? new Object[0] : scriptArgs.toArray();
+    }
+}
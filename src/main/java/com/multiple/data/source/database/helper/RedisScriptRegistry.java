@@ -0,0 +1,152 @@
+package com.multiple.data.source.database.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Lua脚本注册
+ * 注册时返回 {@link RedisScriptHandle}，通过 {@link RedisOperationHelper#eval(RedisScriptHandle, Object)} 执行。
+ * 同一个redis的所有db共享脚本缓存，每个数据源（包括容器创建的默认连接工厂）第一次执行脚本时通过SCRIPT LOAD加载一次所有已注册的脚本，
+ * 加载在执行脚本的线程上进行，不占用创建连接工厂的锁；之后注册的脚本在下一次执行时补充加载。
+ * 执行时使用EVALSHA，redis重启、SCRIPT FLUSH或故障切换导致脚本丢失（NOSCRIPT）时自动使用EVAL重新加载并执行
+ */
+public final class RedisScriptRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisScriptRegistry.class);
+
+    /**
+     * 已注册的脚本，key: 脚本名称
+     */
+    private static final Map<String, RedisScript<?>> SCRIPTS = new ConcurrentHashMap<>();
+
+    /**
+     * 注册的版本号，每次注册加一，数据源已加载的版本号与之不同时重新加载
+     */
+    private static final AtomicInteger VERSION = new AtomicInteger();
+
+    private RedisScriptRegistry() {
+    }
+
+    /**
+     * 注册脚本，同名脚本会被覆盖
+     *
+     * @param name       脚本名称
+     * @param script     Lua脚本
+     * @param resultType 返回值类型：Long、Boolean、List、String，没有返回值时为null
+     */
+    public static <T> RedisScript<T> register(String name, String script, Class<T> resultType) {
+        return register(name, new DefaultRedisScript<>(script, resultType));
+    }
+
+    /**
+     * 注册脚本，同名脚本会被覆盖
+     *
+     * @param name   脚本名称
+     * @param script 脚本，例如从classpath加载的DefaultRedisScript
+     */
+    public static <T> RedisScript<T> register(String name, RedisScript<T> script) {
+        Assert.hasText(name, "name must not be empty.");
+        Assert.notNull(script, "script must not be null.");
+        SCRIPTS.put(name, script);
+        VERSION.incrementAndGet();
+        return script;
+    }
+
+    /**
+     * 注册脚本并绑定KEYS、ARGV的生成方式，同名脚本会被覆盖
+     *
+     * @param name       脚本名称
+     * @param script     Lua脚本
+     * @param resultType 返回值类型：Long、Boolean、List、String，没有返回值时为null
+     * @param keys       由参数生成脚本中的KEYS
+     * @param args       由参数生成脚本中的ARGV，字符串、数字、布尔值、枚举直接转为字符串，其他对象转为JSON
+     */
+    public static <P, T> RedisScriptHandle<P, T> register(String name, String script, Class<T> resultType,
+                                                          Function<P, List<String>> keys, Function<P, List<?>> args) {
+        return register(name, new DefaultRedisScript<>(script, resultType), keys, args);
+    }
+
+    /**
+     * 注册脚本并绑定KEYS、ARGV的生成方式，同名脚本会被覆盖
+     *
+     * @param name   脚本名称
+     * @param script 脚本，例如从classpath加载的DefaultRedisScript
+     * @param keys   由参数生成脚本中的KEYS
+     * @param args   由参数生成脚本中的ARGV
+     */
+    public static <P, T> RedisScriptHandle<P, T> register(String name, RedisScript<T> script,
+                                                          Function<P, List<String>> keys, Function<P, List<?>> args) {
+        return new RedisScriptHandle<>(name, register(name, script), keys, args);
+    }
+
+    /**
+     * 获取已注册的脚本
+     *
+     * @param name 脚本名称
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RedisScript<T> get(String name) {
+        RedisScript<?> script = SCRIPTS.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("redis script " + name + " not registered.");
+        }
+        return (RedisScript<T>) script;
+    }
+
+    /**
+     * 所有已注册的脚本
+     */
+    public static Map<String, RedisScript<?>> getScripts() {
+        return Collections.unmodifiableMap(SCRIPTS);
+    }
+
+    /**
+     * 一个数据源的脚本加载状态，由DynamicRedisTemplateFactory持有，该数据源所有db的redisTemplate共用
+     */
+    public static final class Loader {
+
+        /**
+         * 已加载的注册版本号
+         */
+        private volatile int loadedVersion = -1;
+
+        /**
+         * 有新注册的脚本时通过SCRIPT LOAD加载所有已注册的脚本。并发的第一次执行可能重复加载，SCRIPT LOAD是幂等的；
+         * 失败时只打印警告，不再重试（执行时会通过EVAL加载）
+         *
+         * @param redisTemplate 该数据源任意一个db的redisTemplate
+         */
+        public void ensureLoaded(RedisTemplate<?, ?> redisTemplate) {
+            int version = VERSION.get();
+            if (loadedVersion == version) {
+                return;
+            }
+            loadedVersion = version;
+            if (SCRIPTS.isEmpty()) {
+                return;
+            }
+            try {
+                redisTemplate.execute((RedisCallback<Object>) connection -> {
+                    SCRIPTS.values().forEach(script ->
+                            connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                LOGGER.warn("preload {} redis scripts failed: {}", SCRIPTS.size(), e.getMessage());
+            }
+        }
+    }
+}
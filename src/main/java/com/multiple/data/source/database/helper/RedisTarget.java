@@ -0,0 +1,77 @@
+package com.multiple.data.source.database.helper;
+
+import com.multiple.data.source.constant.EnhanceRedisConstants;
+import org.springframework.util.Assert;
+
+import java.util.Objects;
+
+/**
+ * 分发执行的目标：数据源 + db
+ */
+public final class RedisTarget {
+
+    /**
+     * 数据源名称，<i>default</i> 表示默认数据源
+     */
+    private final String dataSourceName;
+
+    /**
+     * db号，为空表示数据源配置文件中指定的db
+     */
+    private final Integer database;
+
+    private RedisTarget(String dataSourceName, Integer database) {
+        Assert.hasText(dataSourceName, "dataSourceName must not be empty.");
+        Assert.isTrue(database == null || database >= 0, "database must not be negative.");
+        this.dataSourceName = dataSourceName;
+        this.database = database;
+    }
+
+    /**
+     * 数据源配置文件中指定的db
+     */
+    public static RedisTarget of(String dataSourceName) {
+        return new RedisTarget(dataSourceName, null);
+    }
+
+    public static RedisTarget of(String dataSourceName, int database) {
+        return new RedisTarget(dataSourceName, database);
+    }
+
+    /**
+     * 默认数据源的指定db
+     */
+    public static RedisTarget ofDefault(int database) {
+        return new RedisTarget(EnhanceRedisConstants.DefaultRedisHelperName.DEFAULT, database);
+    }
+
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    public Integer getDatabase() {
+        return database;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RedisTarget that = (RedisTarget) o;
+        return dataSourceName.equals(that.dataSourceName) && Objects.equals(database, that.database);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dataSourceName, database);
+    }
+
+    @Override
+    public String toString() {
+        return database == null ? dataSourceName : dataSourceName + "#" + database;
+    }
+}
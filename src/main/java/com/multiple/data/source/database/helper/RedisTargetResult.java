@@ -0,0 +1,55 @@
+package com.multiple.data.source.database.helper;
+
+/**
+ * 单个目标的执行结果
+ *
+ * @param <T> 回调的返回值类型
+ */
+public final class RedisTargetResult<T> {
+
+    private final RedisTarget target;
+
+    private final T value;
+
+    /**
+     * 失败原因，超时为 {@link java.util.concurrent.TimeoutException}
+     */
+    private final Throwable error;
+
+    /**
+     * 从开始执行到完成（或超时）的耗时（毫秒），不包括排队时间
+     */
+    private final long elapsed;
+
+    RedisTargetResult(RedisTarget target, T value, Throwable error, long elapsed) {
+        this.target = target;
+        this.value = value;
+        this.error = error;
+        this.elapsed = elapsed;
+    }
+
+    public RedisTarget getTarget() {
+        return target;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return target + (isSuccess() ? "=" + value : "(" + error + ")") + " in " + elapsed + " ms";
+    }
+}
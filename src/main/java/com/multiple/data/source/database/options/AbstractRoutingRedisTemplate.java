@@ -3,6 +3,7 @@ package com.multiple.data.source.database.options;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.data.redis.core.RedisTemplate;
 
+import java.time.Duration;
 import java.util.Map;
 
 public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K, V> implements InitializingBean {
@@ -10,7 +11,7 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 	/**
 	 * 存放对应库的redisTemplate，用于操作对应的db
 	 */
-	private Map<Object, RedisTemplate<K, V>> redisTemplates;
+	private final RedisTemplateCache<K, V> redisTemplates = new RedisTemplateCache<>();
 
 	/**
 	 * 当不指定库时默认使用的redisTemplate
@@ -19,19 +20,91 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 
 	protected abstract RedisTemplate<K, V> createRedisTemplateOnMissing(Object lookupKey);
 
+	/**
+	 * 使用预留的资源创建redisTemplate，预留交给该方法后由该方法负责归还，默认忽略预留
+	 *
+	 * @param lookupKey   db号
+	 * @param reservation {@link #reserveOnMissing(Object)} 的返回值
+	 */
+	protected RedisTemplate<K, V> createRedisTemplateOnMissing(Object lookupKey, Object reservation) {
+		return createRedisTemplateOnMissing(lookupKey);
+	}
+
+	/**
+	 * 创建redisTemplate之前、获取缓存的锁之前预留资源（例如连接预算），默认不预留
+	 *
+	 * @param lookupKey db号
+	 */
+	protected Object reserveOnMissing(Object lookupKey) {
+		return null;
+	}
+
+	/**
+	 * 归还没有用于创建redisTemplate的预留
+	 *
+	 * @param reservation {@link #reserveOnMissing(Object)} 的返回值
+	 */
+	protected void releaseReservation(Object reservation) {
+	}
+
+	/**
+	 * 获取操作指定db的redisTemplate，不存在时创建并缓存起来（懒加载模式）
+	 *
+	 * @param database db号
+	 */
+	public RedisTemplate<K, V> getRedisTemplate(int database) {
+		return redisTemplates.getOrCreate(database, this::reserveOnMissing, this::releaseReservation,
+				this::createRedisTemplateOnMissing);
+	}
+
+	/**
+	 * 缓存操作指定db的redisTemplate
+	 *
+	 * @param database      db号
+	 * @param redisTemplate redisTemplate
+	 */
+	public void setRedisTemplate(int database, RedisTemplate<K, V> redisTemplate) {
+		redisTemplates.put(database, redisTemplate);
+	}
+
 	public void setRedisTemplates(Map<Object, RedisTemplate<K, V>> redisTemplates) {
-		this.redisTemplates = redisTemplates;
+		redisTemplates.forEach((database, redisTemplate) -> setRedisTemplate(((Number) database).intValue(), redisTemplate));
+	}
+
+	/**
+	 * 配置动态创建的redisTemplate的淘汰策略
+	 *
+	 * @param maximumSize  最多缓存的redisTemplate数量，小于等于0表示不限制
+	 * @param idleTimeout  空闲多久后淘汰，为空表示不按空闲时长淘汰
+	 * @param destroyDelay 淘汰后延迟多久销毁连接工厂
+	 */
+	public void configureRedisTemplateCache(int maximumSize, Duration idleTimeout, Duration destroyDelay) {
+		redisTemplates.configure(maximumSize, idleTimeout, destroyDelay);
+	}
+
+	/**
+	 * 当前存活的redisTemplate数量
+	 */
+	public int getLiveRedisTemplateCount() {
+		return redisTemplates.size();
+	}
+
+	public RedisTemplateCache<K, V> getRedisTemplateCache() {
+		return redisTemplates;
 	}
 
 	public void setDefaultRedisTemplate(RedisTemplate<K, V> defaultRedisTemplate) {
 		this.defaultRedisTemplate = defaultRedisTemplate;
 	}
 
+	/**
+	 * 当前已缓存的redisTemplate快照
+	 */
 	public Map<Object, RedisTemplate<K, V>> getRedisTemplates() {
-		return redisTemplates;
+		return redisTemplates.asMap();
 	}
 
 	public RedisTemplate<K, V> getDefaultRedisTemplate() {
 		return defaultRedisTemplate;
 	}
-}
\ No newline at end of file
+}
@@ -3,8 +3,6 @@ package com.multiple.data.source.database.options;
 import com.multiple.data.source.database.helper.RedisHelper;
 import org.springframework.data.redis.core.RedisTemplate;
 
-import java.util.Map;
-
 public class DefaultOptionsRedisDb extends AbstractOptionsRedisDb<String, String> {
 	
 	public DefaultOptionsRedisDb(RedisHelper redisHelper) {
@@ -101,29 +99,14 @@ public class DefaultOptionsRedisDb extends AbstractOptionsRedisDb<String, String
 	 * 操作db公用方法
 	 */
 	private RedisTemplate<String, String> commonOpsDb(int db) {
-		// 获取到该redisHelper对应的Redis数据源操作的redisTemplates
-		Map<Object, RedisTemplate<String, String>> redisTemplates = redisHelper.getRedisTemplates();
+		// 获取到该RedisHelper的redisTemplate(一定有，在创建redisHelper的时候就赋值了)
+		RedisTemplate<String, String> redisTemplate = redisHelper.getRedisTemplate();
 		// 静态redisHelper不能切换db
-		if (redisTemplates == null) {
+		if (!(redisTemplate instanceof DynamicRedisTemplate)) {
 			throw new RuntimeException("静态redisHelper不支持动态切换redis db，若需要动态切换db，请开启动态配置.");
 		}
 
-		// 获取到该RedisHelper的redisTemplate(一定有，在创建redisHelper的时候就赋值了)
-		DynamicRedisTemplate<String, String> dynamicRedisTemplate = (DynamicRedisTemplate<String, String>) redisHelper
-				.getRedisTemplate();
-		RedisTemplate<String, String> redisTemplate = redisTemplates.get(db);
-
-		// 双重检查，这里直接使用synchronized锁，因为创建redisTemplate不会很频繁，一般整个生命周期只有几次，不会有性能问题
-		if (null == redisTemplate) {
-			synchronized (DynamicRedisTemplate.class) {
-				if (null == redisTemplates.get(db)) {
-					// 创建到该db的RedisTemplate并缓存起来
-					RedisTemplate<String, String> redisTemplateOnMissing = dynamicRedisTemplate.createRedisTemplateOnMissing(db);
-					redisTemplates.put(db, redisTemplateOnMissing);
-				}
-			}
-		}
-
-		return redisTemplates.get(db);
+		// 每个数据源各自缓存该数据源的redisTemplates，命中时无锁；未命中时只锁当前数据源的当前db，创建到该db的RedisTemplate并缓存起来
+		return ((DynamicRedisTemplate<String, String>) redisTemplate).getRedisTemplate(db);
 	}
 }
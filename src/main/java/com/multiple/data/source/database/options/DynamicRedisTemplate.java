@@ -1,6 +1,7 @@
 package com.multiple.data.source.database.options;
 
 import com.multiple.data.source.database.config.DynamicRedisTemplateFactory;
+import com.multiple.data.source.database.config.RedisConnectionGovernor;
 import org.springframework.data.redis.core.RedisTemplate;
 
 public class DynamicRedisTemplate<K, V> extends AbstractRoutingRedisTemplate<K, V> {
@@ -14,6 +15,10 @@ public class DynamicRedisTemplate<K, V> extends AbstractRoutingRedisTemplate<K,
         this.dynamicRedisTemplateFactory = dynamicRedisTemplateFactory;
     }
 
+    public DynamicRedisTemplateFactory<K, V> getDynamicRedisTemplateFactory() {
+        return dynamicRedisTemplateFactory;
+    }
+
     /**
 	 * 通过制定的db创建RedisTemplate
 	 *
@@ -24,4 +29,26 @@ public class DynamicRedisTemplate<K, V> extends AbstractRoutingRedisTemplate<K,
     public RedisTemplate<K, V> createRedisTemplateOnMissing(Object lookupKey) {
         return dynamicRedisTemplateFactory.createRedisTemplate((Integer) lookupKey);
     }
+
+    /**
+     * 使用加锁之前预留的连接预算创建RedisTemplate
+     */
+    @Override
+    protected RedisTemplate<K, V> createRedisTemplateOnMissing(Object lookupKey, Object reservation) {
+        return dynamicRedisTemplateFactory.createRedisTemplate((Integer) lookupKey,
+                (RedisConnectionGovernor.Allocation) reservation);
+    }
+
+    /**
+     * 预留连接预算，预算不足时的等待不占用RedisTemplate缓存的锁
+     */
+    @Override
+    protected Object reserveOnMissing(Object lookupKey) {
+        return dynamicRedisTemplateFactory.reserveConnections((Integer) lookupKey);
+    }
+
+    @Override
+    protected void releaseReservation(Object reservation) {
+        dynamicRedisTemplateFactory.releaseConnections((RedisConnectionGovernor.Allocation) reservation);
+    }
 }
\ No newline at end of file
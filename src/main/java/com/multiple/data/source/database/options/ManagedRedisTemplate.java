@@ -0,0 +1,95 @@
+package com.multiple.data.source.database.options;
+
+import com.multiple.data.source.database.config.RedisShutdownCoordinator;
+import com.multiple.data.source.database.convert.RedisValueCodec;
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import com.multiple.data.source.database.helper.RedisScriptRegistry;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 由DynamicRedisTemplateFactory创建的RedisTemplate
+ * 所有操作（opsForXxx、pipeline、script等）最终都会经过execute(RedisCallback, boolean, boolean)，
+ * 在这里向停机协调器登记正在执行的命令，停机时拒绝新的命令并等待正在执行的命令完成
+ */
+public class ManagedRedisTemplate<K, V> extends RedisTemplate<K, V> {
+
+    /**
+     * 停机协调器，为空时不做登记
+     */
+    private RedisShutdownCoordinator shutdownCoordinator;
+
+    /**
+     * 该db对象值的编解码，为空时使用json
+     */
+    private RedisValueCodec valueCodec;
+
+    /**
+     * 该db的值压缩器，为空表示不压缩
+     */
+    private RedisValueCompressor compressor;
+
+    /**
+     * 同一个连接工厂上value为byte[]的redisTemplate，与当前redisTemplate一起创建、缓存和淘汰
+     */
+    private RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    /**
+     * 所在数据源的Lua脚本加载状态，为空时不预加载脚本
+     */
+    private RedisScriptRegistry.Loader scriptLoader;
+
+    @Override
+    public <T> T execute(RedisCallback<T> action, boolean exposeConnection, boolean pipeline) {
+        RedisShutdownCoordinator coordinator = this.shutdownCoordinator;
+        if (coordinator == null) {
+            return super.execute(action, exposeConnection, pipeline);
+        }
+        coordinator.beforeCommand();
+        try {
+            return super.execute(action, exposeConnection, pipeline);
+        } finally {
+            coordinator.afterCommand();
+        }
+    }
+
+    public RedisShutdownCoordinator getShutdownCoordinator() {
+        return shutdownCoordinator;
+    }
+
+    public void setShutdownCoordinator(RedisShutdownCoordinator shutdownCoordinator) {
+        this.shutdownCoordinator = shutdownCoordinator;
+    }
+
+    public RedisValueCodec getValueCodec() {
+        return valueCodec;
+    }
+
+    public void setValueCodec(RedisValueCodec valueCodec) {
+        this.valueCodec = valueCodec;
+    }
+
+    public RedisValueCompressor getCompressor() {
+        return compressor;
+    }
+
+    public void setCompressor(RedisValueCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    public RedisTemplate<String, byte[]> getByteRedisTemplate() {
+        return byteRedisTemplate;
+    }
+
+    public void setByteRedisTemplate(RedisTemplate<String, byte[]> byteRedisTemplate) {
+        this.byteRedisTemplate = byteRedisTemplate;
+    }
+
+    public RedisScriptRegistry.Loader getScriptLoader() {
+        return scriptLoader;
+    }
+
+    public void setScriptLoader(RedisScriptRegistry.Loader scriptLoader) {
+        this.scriptLoader = scriptLoader;
+    }
+}
@@ -0,0 +1,457 @@
+package com.multiple.data.source.database.options;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * 单个数据源的多db RedisTemplate缓存
+ * 0~15号db（redis默认16个db，对应opsDbZero~opsDbFifteen）使用数组存放，命中时只有一次volatile读；
+ * 其他db（opsOtherDb）存放在ConcurrentHashMap中。
+ * 创建RedisTemplate时按db加锁，同一个数据源不同db的创建互不阻塞；每个数据源持有自己的缓存，不同数据源之间也互不阻塞。
+ * 连接预算等可能等待的预留在加锁之前完成。
+ * <p>
+ * 动态创建的RedisTemplate可以按空闲时长以及最大数量淘汰，淘汰时延迟销毁其连接工厂（关闭连接池），
+ * 挂在ManagedRedisTemplate上的byte[] redisTemplate共用同一个连接工厂，随之一起缓存和淘汰；
+ * 通过put放入的RedisTemplate（数据源默认db的RedisTemplate）不会被淘汰。
+ * 缓存不知道RedisTemplate是否仍被外部持有：开启淘汰后，长期持有opsOtherDb等方法返回的RedisTemplate
+ * （例如用它创建的RedisOperationHelper、AsyncRedisOperationHelper、RedisNearCache）在淘汰后会使用已销毁的连接池，
+ * 这类对象应在每次使用时重新获取RedisTemplate，或者不开启淘汰
+ */
+public class RedisTemplateCache<K, V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisTemplateCache.class);
+
+    /**
+     * 使用数组缓存的db数量
+     */
+    static final int INDEXED_DATABASES = 16;
+
+    /**
+     * 访问时间的更新精度，避免每次访问都写volatile变量
+     */
+    private static final long TOUCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 空闲检查的最小、最大间隔，单位：毫秒
+     */
+    private static final long MIN_SWEEP_INTERVAL = 1000L;
+    private static final long MAX_SWEEP_INTERVAL = 60 * 1000L;
+
+    /**
+     * 默认延迟销毁时长，给淘汰时正在使用该RedisTemplate的线程留出时间
+     */
+    private static final Duration DEFAULT_DESTROY_DELAY = Duration.ofSeconds(5);
+
+    /**
+     * 所有缓存共享的淘汰线程
+     */
+    private static volatile ScheduledExecutorService evictor;
+
+    /**
+     * 0~15号db的RedisTemplate
+     */
+    private final AtomicReferenceArray<Entry<K, V>> indexedTemplates = new AtomicReferenceArray<>(INDEXED_DATABASES);
+
+    /**
+     * 0~15号db创建RedisTemplate时使用的锁
+     */
+    private final Object[] locks = new Object[INDEXED_DATABASES];
+
+    /**
+     * 其他db的RedisTemplate
+     */
+    private final ConcurrentMap<Integer, Entry<K, V>> otherTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * 其他db创建RedisTemplate时使用的锁，不在computeIfAbsent中创建RedisTemplate，避免阻塞同一个桶中的其他db
+     */
+    private final ConcurrentMap<Integer, Object> otherLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 累计淘汰数量
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 最多缓存的RedisTemplate数量，小于等于0表示不限制
+     */
+    private volatile int maximumSize;
+
+    /**
+     * 空闲多久后淘汰，单位：纳秒，小于等于0表示不按空闲时长淘汰
+     */
+    private volatile long idleTimeoutNanos;
+
+    /**
+     * 淘汰后延迟多久销毁连接工厂，单位：毫秒
+     */
+    private volatile long destroyDelayMillis = DEFAULT_DESTROY_DELAY.toMillis();
+
+    /**
+     * 连接工厂的销毁方式
+     */
+    private volatile Consumer<RedisConnectionFactory> connectionFactoryDestroyer = RedisTemplateCache::destroyConnectionFactory;
+
+    /**
+     * 空闲检查任务
+     */
+    private ScheduledFuture<?> sweepTask;
+
+    public RedisTemplateCache() {
+        for (int i = 0; i < INDEXED_DATABASES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 配置淘汰策略
+     *
+     * @param maximumSize  最多缓存的RedisTemplate数量，小于等于0表示不限制
+     * @param idleTimeout  空闲多久后淘汰，为空表示不按空闲时长淘汰
+     * @param destroyDelay 淘汰后延迟多久销毁连接工厂，为空使用默认值
+     */
+    public synchronized void configure(int maximumSize, Duration idleTimeout, Duration destroyDelay) {
+        this.maximumSize = Math.max(maximumSize, 0);
+        this.idleTimeoutNanos = isPositive(idleTimeout) ? idleTimeout.toNanos() : 0;
+        if (destroyDelay != null) {
+            this.destroyDelayMillis = Math.max(destroyDelay.toMillis(), 0);
+        }
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+            sweepTask = null;
+        }
+        if (idleTimeoutNanos > 0) {
+            long interval = Math.min(Math.max(TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 2, MIN_SWEEP_INTERVAL),
+                    MAX_SWEEP_INTERVAL);
+            sweepTask = evictor().scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        evictOverflow(null);
+    }
+
+    /**
+     * 获取指定db的RedisTemplate
+     *
+     * @param database db号
+     * @return 没有缓存时返回null
+     */
+    public RedisTemplate<K, V> get(int database) {
+        Entry<K, V> entry = isIndexed(database) ? indexedTemplates.get(database) : otherTemplates.get(database);
+        if (entry == null) {
+            return null;
+        }
+        entry.touch();
+        return entry.redisTemplate;
+    }
+
+    /**
+     * 获取指定db的RedisTemplate，不存在则创建并缓存起来
+     *
+     * @param database db号
+     * @param creator  RedisTemplate创建方法
+     */
+    public RedisTemplate<K, V> getOrCreate(int database, IntFunction<RedisTemplate<K, V>> creator) {
+        return getOrCreate(database, db -> null, reservation -> {
+        }, (db, reservation) -> creator.apply(db));
+    }
+
+    /**
+     * 获取指定db的RedisTemplate，不存在则创建并缓存起来。
+     * 创建之前先在锁外预留资源（例如连接预算），预留时的等待不会占用当前db的锁；
+     * 并发创建时没有用上的预留通过release归还，预留失败时如果其他线程已经创建完成则直接返回
+     *
+     * @param database db号
+     * @param reserver 加锁之前调用的资源预留方法
+     * @param releaser 预留没有交给creator时的归还方法
+     * @param creator  RedisTemplate创建方法，预留交给creator之后由creator负责归还
+     */
+    public <R> RedisTemplate<K, V> getOrCreate(int database, IntFunction<R> reserver, Consumer<R> releaser,
+                                               BiFunction<Integer, R, RedisTemplate<K, V>> creator) {
+        RedisTemplate<K, V> redisTemplate = get(database);
+        if (redisTemplate != null) {
+            return redisTemplate;
+        }
+        R reservation;
+        try {
+            reservation = reserver.apply(database);
+        } catch (RuntimeException e) {
+            redisTemplate = get(database);
+            if (redisTemplate != null) {
+                return redisTemplate;
+            }
+            throw e;
+        }
+        Entry<K, V> entry;
+        boolean unused = true;
+        try {
+            // 双重检查，只锁当前db，创建redisTemplate不会很频繁
+            synchronized (lock(database)) {
+                entry = isIndexed(database) ? indexedTemplates.get(database) : otherTemplates.get(database);
+                if (entry == null) {
+                    unused = false;
+                    entry = new Entry<>(creator.apply(database, reservation), false);
+                    if (isIndexed(database)) {
+                        indexedTemplates.set(database, entry);
+                    } else {
+                        otherTemplates.put(database, entry);
+                    }
+                }
+            }
+        } finally {
+            if (unused) {
+                releaser.accept(reservation);
+            }
+        }
+        evictOverflow(entry);
+        return entry.redisTemplate;
+    }
+
+    /**
+     * 创建指定db的RedisTemplate时使用的锁，其他db的锁按需创建，数量不超过redis配置的db数量
+     */
+    private Object lock(int database) {
+        return isIndexed(database) ? locks[database] : otherLocks.computeIfAbsent(database, db -> new Object());
+    }
+
+    /**
+     * 缓存指定db的RedisTemplate，通过该方法放入的RedisTemplate不会被淘汰
+     *
+     * @param database      db号
+     * @param redisTemplate redisTemplate
+     */
+    public void put(int database, RedisTemplate<K, V> redisTemplate) {
+        Entry<K, V> entry = new Entry<>(redisTemplate, true);
+        if (isIndexed(database)) {
+            indexedTemplates.set(database, entry);
+        } else {
+            otherTemplates.put(database, entry);
+        }
+    }
+
+    /**
+     * 当前存活（已缓存）的RedisTemplate数量
+     */
+    public int size() {
+        int size = otherTemplates.size();
+        for (int i = 0; i < INDEXED_DATABASES; i++) {
+            if (indexedTemplates.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 累计淘汰的RedisTemplate数量
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 当前缓存的快照（key: db号，value: RedisTemplate）
+     */
+    public Map<Object, RedisTemplate<K, V>> asMap() {
+        Map<Object, RedisTemplate<K, V>> redisTemplates = new HashMap<>(INDEXED_DATABASES);
+        forEachEntry((database, entry) -> redisTemplates.put(database, entry.redisTemplate));
+        return redisTemplates;
+    }
+
+    /**
+     * 淘汰空闲时长超过idleTimeout的RedisTemplate
+     */
+    public void evictIdle() {
+        long idleTimeout = idleTimeoutNanos;
+        if (idleTimeout <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        forEachEntry((database, entry) -> {
+            if (!entry.pinned && now - entry.lastAccess >= idleTimeout) {
+                evict(database, entry, "idle");
+            }
+        });
+    }
+
+    /**
+     * 超过最大数量时淘汰最久没有访问的RedisTemplate
+     *
+     * @param keep 刚创建的RedisTemplate，不参与淘汰
+     */
+    private synchronized void evictOverflow(Entry<K, V> keep) {
+        if (maximumSize <= 0) {
+            return;
+        }
+        while (size() > maximumSize) {
+            AtomicInteger candidateDatabase = new AtomicInteger();
+            AtomicReference<Entry<K, V>> candidate = new AtomicReference<>();
+            forEachEntry((database, entry) -> {
+                if (entry.pinned || entry == keep) {
+                    return;
+                }
+                if (candidate.get() == null || entry.lastAccess < candidate.get().lastAccess) {
+                    candidateDatabase.set(database);
+                    candidate.set(entry);
+                }
+            });
+            if (candidate.get() == null) {
+                return;
+            }
+            evict(candidateDatabase.get(), candidate.get(), "overflow");
+        }
+    }
+
+    /**
+     * 关闭缓存：停止空闲检查，立即销毁所有动态创建的RedisTemplate的连接工厂
+     */
+    public synchronized void close() {
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+            sweepTask = null;
+        }
+        forEachEntry((database, entry) -> {
+            if (!entry.pinned && remove(database, entry)) {
+                destroy(database, entry.redisTemplate);
+            }
+        });
+    }
+
+    private void evict(int database, Entry<K, V> entry, String reason) {
+        if (!remove(database, entry)) {
+            return;
+        }
+        evictionCount.incrementAndGet();
+        LOGGER.info("evict RedisTemplate of db {} ({}), live RedisTemplates: {}", database, reason, size());
+        long delay = destroyDelayMillis;
+        if (delay <= 0) {
+            destroy(database, entry.redisTemplate);
+        } else {
+            evictor().schedule(() -> destroy(database, entry.redisTemplate), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean remove(int database, Entry<K, V> entry) {
+        if (isIndexed(database)) {
+            return indexedTemplates.compareAndSet(database, entry, null);
+        }
+        return otherTemplates.remove(database, entry);
+    }
+
+    /**
+     * 销毁RedisTemplate的连接工厂，关闭连接池。单连接多db模式下连接工厂是共享的，不会被销毁
+     */
+    private void destroy(int database, RedisTemplate<?, ?> redisTemplate) {
+        RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+        if (connectionFactory == null) {
+            return;
+        }
+        try {
+            connectionFactoryDestroyer.accept(connectionFactory);
+        } catch (Exception e) {
+            LOGGER.warn("destroy connection factory of db {} failed.", database, e);
+        }
+    }
+
+    private static void destroyConnectionFactory(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof DisposableBean) {
+            try {
+                ((DisposableBean) connectionFactory).destroy();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 设置连接工厂的销毁方式，默认直接调用DisposableBean#destroy
+     */
+    public void setConnectionFactoryDestroyer(Consumer<RedisConnectionFactory> connectionFactoryDestroyer) {
+        this.connectionFactoryDestroyer = connectionFactoryDestroyer;
+    }
+
+    private void forEachEntry(BiConsumer<Integer, Entry<K, V>> action) {
+        for (int i = 0; i < INDEXED_DATABASES; i++) {
+            Entry<K, V> entry = indexedTemplates.get(i);
+            if (entry != null) {
+                action.accept(i, entry);
+            }
+        }
+        otherTemplates.forEach(action);
+    }
+
+    private static boolean isIndexed(int database) {
+        return database >= 0 && database < INDEXED_DATABASES;
+    }
+
+    private static boolean isPositive(Duration duration) {
+        return duration != null && !duration.isZero() && !duration.isNegative();
+    }
+
+    private static ScheduledExecutorService evictor() {
+        ScheduledExecutorService executor = evictor;
+        if (executor == null) {
+            synchronized (RedisTemplateCache.class) {
+                executor = evictor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "redis-template-evictor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    evictor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 缓存项
+     */
+    private static final class Entry<K, V> {
+
+        private final RedisTemplate<K, V> redisTemplate;
+
+        /**
+         * 是否常驻（不参与淘汰）
+         */
+        private final boolean pinned;
+
+        /**
+         * 最后访问时间（System.nanoTime）
+         */
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(RedisTemplate<K, V> redisTemplate, boolean pinned) {
+            this.redisTemplate = redisTemplate;
+            this.pinned = pinned;
+        }
+
+        void touch() {
+            long now = System.nanoTime();
+            if (now - lastAccess > TOUCH_INTERVAL_NANOS) {
+                lastAccess = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.multiple.data.source.database.registrar;
+
+import com.multiple.data.source.database.config.RedisClientType;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个redis数据源配置，即 <code>spring.redis.datasource.[name]</code> 下的配置，
+ * 在spring boot {@link RedisProperties} 的基础上扩展多数据源相关的配置
+ *
+ */
+public class MultiRedisProperties extends RedisProperties {
+
+    /**
+     * lettuce ClientResources（事件循环线程池、计算线程池、定时器）隔离分组，
+     * 不配置则与默认数据源以及其他数据源共享同一份ClientResources
+     */
+    private String clientResourcesGroup;
+
+    /**
+     * 该数据源使用的客户端（lettuce或jedis），不配置则使用stone.redis.client-type，都不配置时类路径下有lettuce则优先使用lettuce
+     */
+    private RedisClientType clientType;
+
+    /**
+     * 该数据源对象值的编解码（json、smile、avro或自定义编解码的名称），不配置则使用stone.redis.value-codec
+     */
+    private String valueCodec;
+
+    /**
+     * 该数据源的值压缩配置，不配置则使用stone.redis.compression
+     */
+    private RedisCompressionProperties compression;
+
+    /**
+     * 每个db单独的配置，key: db号
+     */
+    private Map<Integer, RedisDatabaseProperties> databases = new LinkedHashMap<>();
+
+    public String getClientResourcesGroup() {
+        return clientResourcesGroup;
+    }
+
+    public void setClientResourcesGroup(String clientResourcesGroup) {
+        this.clientResourcesGroup = clientResourcesGroup;
+    }
+
+    public RedisClientType getClientType() {
+        return clientType;
+    }
+
+    public void setClientType(RedisClientType clientType) {
+        this.clientType = clientType;
+    }
+
+    public String getValueCodec() {
+        return valueCodec;
+    }
+
+    public void setValueCodec(String valueCodec) {
+        this.valueCodec = valueCodec;
+    }
+
+    public RedisCompressionProperties getCompression() {
+        return compression;
+    }
+
+    public void setCompression(RedisCompressionProperties compression) {
+        this.compression = compression;
+    }
+
+    public Map<Integer, RedisDatabaseProperties> getDatabases() {
+        return databases;
+    }
+
+    public void setDatabases(Map<Integer, RedisDatabaseProperties> databases) {
+        this.databases = databases;
+    }
+}
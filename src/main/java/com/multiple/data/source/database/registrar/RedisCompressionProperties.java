@@ -0,0 +1,65 @@
+package com.multiple.data.source.database.registrar;
+
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+
+import java.util.zip.Deflater;
+
+/**
+ * 值压缩配置，即 <code>stone.redis.compression</code>、<code>spring.redis.datasource.[name].compression</code>
+ * 以及 <code>databases.[db].compression</code> 下的配置，配置后即开启，db的配置覆盖数据源的配置，数据源的配置覆盖stone.redis的配置
+ *
+ */
+public class RedisCompressionProperties {
+
+    /**
+     * 是否开启压缩，用于单独关闭某个数据源或db的压缩
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最小压缩长度（序列化后的字节数），小于该长度的值原样写入
+     */
+    private int minSize = RedisValueCompressor.DEFAULT_MIN_SIZE;
+
+    /**
+     * Deflater压缩级别，0-9，-1表示默认级别
+     */
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * 按配置创建压缩器
+     *
+     * @param properties 压缩配置
+     * @return 没有配置或关闭时返回null
+     */
+    public static RedisValueCompressor createCompressor(RedisCompressionProperties properties) {
+        if (properties == null || !properties.isEnabled()) {
+            return null;
+        }
+        return new RedisValueCompressor(properties.getMinSize(), properties.getLevel());
+    }
+}
@@ -0,0 +1,248 @@
+package com.multiple.data.source.database.registrar;
+
+import com.multiple.data.source.constant.EnhanceRedisConstants;
+import com.multiple.data.source.database.config.DynamicRedisTemplateFactory;
+import com.multiple.data.source.database.helper.RedisHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis 多数据源启动器
+ * 启动时并行创建所有数据源的连接工厂和默认db的RedisTemplate，并发送PING校验，所有数据源共用一个总超时时长，
+ * 完成后打印每个数据源的耗时。RedisTemplateFactoryBean和RedisHelperFactoryBean都从这里获取，同一个数据源只创建一个连接工厂。
+ * <p>
+ * 注意：工作线程中不能访问spring容器（容器创建bean时持有单例锁，工作线程getBean会死锁），
+ * 所以容器中的依赖都在当前线程解析完，工作线程只负责建立连接
+ */
+public class RedisDataSourceBootstrap extends RedisDataSourceContext implements InitializingBean, SmartInitializingSingleton {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * 所有数据源名称
+     */
+    private final Set<String> dataSourceNames;
+
+    /**
+     * 已创建的数据源，key: 数据源名称
+     */
+    private final Map<String, DataSource> dataSources = new ConcurrentHashMap<>();
+
+    public RedisDataSourceBootstrap(Set<String> dataSourceNames) {
+        this.dataSourceNames = dataSourceNames == null ? Collections.emptySet() : new LinkedHashSet<>(dataSourceNames);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (dataSourceNames.isEmpty()) {
+            return;
+        }
+        StoneRedisProperties.BootstrapProperties bootstrap = getStoneRedisProperties().getBootstrap();
+
+        // 在当前线程解析容器中的依赖并构建所有数据源的RedisTemplateFactory
+        List<String> names = new ArrayList<>(dataSourceNames);
+        List<Callable<DataSource>> tasks = new ArrayList<>(names.size());
+        for (String name : names) {
+            DynamicRedisTemplateFactory<String, String> factory = getDynamicRedisTemplateFactory(name);
+            int database = getRedisProperties(name).getDatabase();
+            // 由工作线程自己放入dataSources，超时被取消的任务之后完成时也会被采用，不会再创建第二个连接工厂
+            tasks.add(() -> publish(name, createDataSource(factory, database, bootstrap.isValidate())));
+        }
+
+        int parallelism = bootstrap.getParallelism() > 0 ? Math.min(bootstrap.getParallelism(), names.size()) : names.size();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "redis-bootstrap");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.currentTimeMillis();
+        List<Future<DataSource>> futures;
+        try {
+            futures = executor.invokeAll(tasks, Math.max(bootstrap.getTimeout().toMillis(), 1), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("redis datasource bootstrap interrupted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 汇总每个数据源的结果
+        List<String> failed = new ArrayList<>();
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            report.append("\n  ").append(name).append(": ");
+            try {
+                DataSource dataSource = futures.get(i).get();
+                report.append(dataSource.elapsed).append(" ms");
+                if (dataSource.error != null) {
+                    failed.add(name);
+                    report.append(", validate failed: ").append(dataSource.error.getMessage());
+                }
+            } catch (CancellationException e) {
+                failed.add(name);
+                report.append("timeout");
+            } catch (ExecutionException e) {
+                failed.add(name);
+                report.append("failed: ").append(e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("redis datasource bootstrap interrupted.", e);
+            }
+        }
+        logger.info("bootstrap {} redis datasource in {} ms:{}", names.size(), System.currentTimeMillis() - start, report);
+
+        if (!failed.isEmpty()) {
+            if (bootstrap.isFailFast()) {
+                throw new IllegalStateException("redis datasource bootstrap failed: " + failed);
+            }
+            logger.warn("redis datasource {} not ready, will retry on first use.", failed);
+        }
+    }
+
+    /**
+     * 所有单例创建完成后，将默认数据源和多数据源的RedisHelper、RedisTemplate注册到RedisDataSourceRegister
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void afterSingletonsInstantiated() {
+        // 注册默认数据源的redisHelper和redisTemplate(这两个bean在自动配置类中已经注入了)
+        if (applicationContext.containsBean(EnhanceRedisConstants.DefaultRedisHelperName.REDIS_HELPER)) {
+            RedisDataSourceRegister.registerRedisHelper(EnhanceRedisConstants.MultiSource.DEFAULT_SOURCE_HELPER,
+                    applicationContext.getBean(EnhanceRedisConstants.DefaultRedisHelperName.REDIS_HELPER, RedisHelper.class));
+        }
+        if (applicationContext.containsBean(EnhanceRedisConstants.DefaultRedisTemplateName.REDIS_TEMPLATE)) {
+            RedisDataSourceRegister.registerRedisTemplate(EnhanceRedisConstants.MultiSource.DEFAULT_SOURCE_TEMPLATE,
+                    applicationContext.getBean(EnhanceRedisConstants.DefaultRedisTemplateName.REDIS_TEMPLATE, RedisTemplate.class));
+        }
+
+        // 注册多数据源的RedisTemplate和RedisHelper
+        dataSourceNames.forEach(name -> {
+            String realTemplateName = name + EnhanceRedisConstants.MultiSource.REDIS_TEMPLATE;
+            String realHelperName = name + EnhanceRedisConstants.MultiSource.REDIS_HELPER;
+            RedisDataSourceRegister.registerRedisTemplate(realTemplateName,
+                    applicationContext.getBean(realTemplateName, RedisTemplate.class));
+            RedisDataSourceRegister.registerRedisHelper(realHelperName,
+                    applicationContext.getBean(realHelperName, RedisHelper.class));
+        });
+    }
+
+    /**
+     * 获取数据源的RedisTemplateFactory
+     *
+     * @param name 数据源名称
+     */
+    public DynamicRedisTemplateFactory<String, String> getRedisTemplateFactory(String name) {
+        return getDataSource(name).factory;
+    }
+
+    /**
+     * 获取数据源默认db的RedisTemplate
+     *
+     * @param name 数据源名称
+     */
+    public RedisTemplate<String, String> getRedisTemplate(String name) {
+        return getDataSource(name).redisTemplate;
+    }
+
+    public Set<String> getDataSourceNames() {
+        return Collections.unmodifiableSet(dataSourceNames);
+    }
+
+    /**
+     * 获取数据源，启动时超时或失败的数据源在这里同步创建
+     */
+    private DataSource getDataSource(String name) {
+        DataSource dataSource = dataSources.get(name);
+        if (dataSource == null) {
+            synchronized (dataSources) {
+                dataSource = dataSources.get(name);
+                if (dataSource == null) {
+                    dataSource = publish(name, createDataSource(getDynamicRedisTemplateFactory(name),
+                            getRedisProperties(name).getDatabase(), false));
+                }
+            }
+        }
+        return dataSource;
+    }
+
+    /**
+     * 放入已创建的数据源。启动时超时的任务可能在这里同步创建之后才完成，后完成的一方销毁自己的连接工厂并归还连接预算
+     *
+     * @return 最终采用的数据源
+     */
+    private DataSource publish(String name, DataSource dataSource) {
+        DataSource existing = dataSources.putIfAbsent(name, dataSource);
+        if (existing == null) {
+            return dataSource;
+        }
+        dataSource.factory.destroyRedisTemplate(dataSource.redisTemplate);
+        return existing;
+    }
+
+    /**
+     * 创建数据源默认db的RedisTemplate，校验失败不影响创建（连接会在使用时重连）
+     */
+    private static DataSource createDataSource(DynamicRedisTemplateFactory<String, String> factory, int database,
+                                               boolean validate) {
+        long start = System.currentTimeMillis();
+        RedisTemplate<String, String> redisTemplate = factory.createRedisTemplate(database);
+        Exception error = null;
+        if (validate) {
+            try {
+                redisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        return new DataSource(factory, redisTemplate, System.currentTimeMillis() - start, error);
+    }
+
+    /**
+     * 启动完成的数据源
+     */
+    private static final class DataSource {
+
+        private final DynamicRedisTemplateFactory<String, String> factory;
+
+        private final RedisTemplate<String, String> redisTemplate;
+
+        /**
+         * 创建、校验耗时（毫秒）
+         */
+        private final long elapsed;
+
+        /**
+         * 校验失败的原因，为空表示校验通过或未校验
+         */
+        private final Exception error;
+
+        private DataSource(DynamicRedisTemplateFactory<String, String> factory, RedisTemplate<String, String> redisTemplate,
+                           long elapsed, Exception error) {
+            this.factory = factory;
+            this.redisTemplate = redisTemplate;
+            this.elapsed = elapsed;
+            this.error = error;
+        }
+    }
+}
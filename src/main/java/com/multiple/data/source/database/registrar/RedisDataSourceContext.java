@@ -1,10 +1,12 @@
 package com.multiple.data.source.database.registrar;
 
+import com.multiple.data.source.database.config.ClientResourcesRegistry;
 import com.multiple.data.source.database.config.DynamicRedisTemplateFactory;
+import com.multiple.data.source.database.config.RedisConnectionGovernor;
+import com.multiple.data.source.database.config.RedisShutdownCoordinator;
 import org.springframework.beans.BeansException;
 import org.springframework.boot.autoconfigure.data.redis.JedisClientConfigurationBuilderCustomizer;
 import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
-import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.data.redis.connection.RedisClusterConfiguration;
@@ -32,26 +34,79 @@ public abstract class RedisDataSourceContext implements ApplicationContextAware
     /**
      * 通过数据源名称获取该数据源对应的Redis配置
      */
-    protected RedisProperties getRedisProperties() {
+    protected MultiRedisProperties getRedisProperties() {
+        return getRedisProperties(dataSourceName);
+    }
+
+    /**
+     * 通过数据源名称获取该数据源对应的Redis配置
+     *
+     * @param name 数据源名称
+     */
+    protected MultiRedisProperties getRedisProperties(String name) {
         RedisDataSourceProperties dataSourceProperties = applicationContext.getBean(RedisDataSourceProperties.class);
         // 通过数据源名称获取application配置文件中配置的该数据源的redis-properties
-        return dataSourceProperties.getDatasource().get(dataSourceName);
+        return dataSourceProperties.getDatasource().get(name);
     }
 
     /**
      * 通过数据源对应的Redis配置获取DynamicRedisTemplateFactory
      */
     protected DynamicRedisTemplateFactory<String, String> getDynamicRedisTemplateFactory() {
+        return getDynamicRedisTemplateFactory(dataSourceName);
+    }
+
+    /**
+     * 通过数据源对应的Redis配置创建DynamicRedisTemplateFactory
+     *
+     * @param name 数据源名称
+     */
+    protected DynamicRedisTemplateFactory<String, String> getDynamicRedisTemplateFactory(String name) {
         // 获取数据源对应的Redis配置信息
-        RedisProperties redisProperties = getRedisProperties();
+        MultiRedisProperties redisProperties = getRedisProperties(name);
         List<JedisClientConfigurationBuilderCustomizer> jedisBuilderCustomizers = getJedisBuilderCustomizers();
         List<LettuceClientConfigurationBuilderCustomizer> lettuceBuilderCustomizers = getLettuceBuilderCustomizers();
         RedisSentinelConfiguration sentinelConfiguration = getSentinelConfiguration();
         RedisClusterConfiguration redisClusterConfiguration = getRedisClusterConfiguration();
 
         // 根据配置信息构建一个RedisTemplateFactory
-        return new DynamicRedisTemplateFactory<>(redisProperties, sentinelConfiguration,
-                redisClusterConfiguration, jedisBuilderCustomizers, lettuceBuilderCustomizers);
+        DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory = new DynamicRedisTemplateFactory<>(
+                redisProperties, sentinelConfiguration, redisClusterConfiguration, jedisBuilderCustomizers,
+                lettuceBuilderCustomizers);
+        // 与默认数据源共享ClientResources，配置了隔离分组的数据源使用单独的ClientResources
+        dynamicRedisTemplateFactory.setClientResourcesRegistry(getClientResourcesRegistry());
+        dynamicRedisTemplateFactory.setClientResourcesGroup(redisProperties.getClientResourcesGroup());
+        dynamicRedisTemplateFactory.setSingleConnection(getStoneRedisProperties().isSingleConnection());
+        dynamicRedisTemplateFactory.setShutdownCoordinator(getShutdownCoordinator());
+        dynamicRedisTemplateFactory.setDatabasePools(RedisDatabaseProperties.getPools(redisProperties.getDatabases()));
+        dynamicRedisTemplateFactory.setDatabaseValueCodecs(RedisDatabaseProperties.getValueCodecs(redisProperties.getDatabases()));
+        dynamicRedisTemplateFactory.setDatabaseCompressors(RedisDatabaseProperties.getCompressors(redisProperties.getDatabases()));
+        dynamicRedisTemplateFactory.setConnectionGovernor(getConnectionGovernor());
+        dynamicRedisTemplateFactory.setDataSourceName(name);
+        // 数据源单独指定的客户端优先
+        dynamicRedisTemplateFactory.setClientType(redisProperties.getClientType() != null
+                ? redisProperties.getClientType() : getStoneRedisProperties().getClientType());
+        dynamicRedisTemplateFactory.setValueCodec(redisProperties.getValueCodec() != null
+                ? redisProperties.getValueCodec() : getStoneRedisProperties().getValueCodec());
+        dynamicRedisTemplateFactory.setCompressor(RedisCompressionProperties.createCompressor(redisProperties.getCompression() != null
+                ? redisProperties.getCompression() : getStoneRedisProperties().getCompression()));
+        return dynamicRedisTemplateFactory;
+    }
+
+    protected StoneRedisProperties getStoneRedisProperties() {
+        return applicationContext.getBean(StoneRedisProperties.class);
+    }
+
+    protected RedisShutdownCoordinator getShutdownCoordinator() {
+        return applicationContext.getBeanProvider(RedisShutdownCoordinator.class).getIfAvailable();
+    }
+
+    protected RedisConnectionGovernor getConnectionGovernor() {
+        return applicationContext.getBeanProvider(RedisConnectionGovernor.class).getIfAvailable();
+    }
+
+    protected ClientResourcesRegistry getClientResourcesRegistry() {
+        return applicationContext.getBeanProvider(ClientResourcesRegistry.class).getIfAvailable();
     }
 
     protected List<JedisClientConfigurationBuilderCustomizer> getJedisBuilderCustomizers() {
@@ -1,7 +1,6 @@
 package com.multiple.data.source.database.registrar;
 
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
@@ -24,13 +23,13 @@ public class RedisDataSourceProperties {
     /**
      * 数据源配置集合（key: 数据源名称， value: 数据源对应的Redis配置）
      */
-    private Map<String, RedisProperties> datasource = new ConcurrentHashMap<>();
+    private Map<String, MultiRedisProperties> datasource = new ConcurrentHashMap<>();
 
-    public Map<String, RedisProperties> getDatasource() {
+    public Map<String, MultiRedisProperties> getDatasource() {
         return datasource;
     }
 
-    public void setDatasource(Map<String, RedisProperties> datasource) {
+    public void setDatasource(Map<String, MultiRedisProperties> datasource) {
         this.datasource = datasource;
     }
 
@@ -40,7 +39,7 @@ public class RedisDataSourceProperties {
      * @param datasourceName  Redis数据源名称
      * @param redisProperties Redis配置
      */
-    public void addRedisProperties(String datasourceName, RedisProperties redisProperties) {
+    public void addRedisProperties(String datasourceName, MultiRedisProperties redisProperties) {
         if (StringUtils.isBlank(datasourceName)) {
             throw new IllegalArgumentException("datasource name can not be null, please check.");
         }
@@ -54,9 +53,9 @@ public class RedisDataSourceProperties {
      * 根据数据源名称获取Redis数据源配置
      *
      * @param datasourceName 数据源名称
-     * @return org.springframework.boot.autoconfigure.data.redis.RedisProperties
+     * @return com.multiple.data.source.database.registrar.MultiRedisProperties
      */
-    public RedisProperties getRedisProperties(String datasourceName) {
+    public MultiRedisProperties getRedisProperties(String datasourceName) {
         return datasource.get(datasourceName);
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.multiple.data.source.database.registrar;
+
+import com.multiple.data.source.database.convert.RedisValueCompressor;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个db的配置，即 <code>spring.redis.datasource.[name].databases.[db]</code> 以及
+ * <code>stone.redis.databases.[db]</code>（默认数据源）下的配置
+ *
+ */
+public class RedisDatabaseProperties {
+
+    /**
+     * 该db的连接池配置，配置后整体覆盖数据源的连接池配置（lettuce.pool或jedis.pool）
+     */
+    private RedisProperties.Pool pool;
+
+    /**
+     * 该db对象值的编解码（json、smile、avro或自定义编解码的名称），配置后覆盖数据源的编解码
+     */
+    private String valueCodec;
+
+    /**
+     * 该db的值压缩配置，配置后覆盖数据源的压缩配置
+     */
+    private RedisCompressionProperties compression;
+
+    public RedisProperties.Pool getPool() {
+        return pool;
+    }
+
+    public void setPool(RedisProperties.Pool pool) {
+        this.pool = pool;
+    }
+
+    public String getValueCodec() {
+        return valueCodec;
+    }
+
+    public void setValueCodec(String valueCodec) {
+        this.valueCodec = valueCodec;
+    }
+
+    public RedisCompressionProperties getCompression() {
+        return compression;
+    }
+
+    public void setCompression(RedisCompressionProperties compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * 提取每个db单独配置的连接池
+     *
+     * @param databases key: db号，value: db配置
+     * @return key: db号，value: 连接池配置
+     */
+    public static Map<Integer, RedisProperties.Pool> getPools(Map<Integer, RedisDatabaseProperties> databases) {
+        Map<Integer, RedisProperties.Pool> pools = new LinkedHashMap<>();
+        if (databases != null) {
+            databases.forEach((database, properties) -> {
+                if (properties != null && properties.getPool() != null) {
+                    pools.put(database, properties.getPool());
+                }
+            });
+        }
+        return pools;
+    }
+
+    /**
+     * 提取每个db单独配置的编解码
+     *
+     * @param databases key: db号，value: db配置
+     * @return key: db号，value: 编解码名称
+     */
+    public static Map<Integer, String> getValueCodecs(Map<Integer, RedisDatabaseProperties> databases) {
+        Map<Integer, String> valueCodecs = new LinkedHashMap<>();
+        if (databases != null) {
+            databases.forEach((database, properties) -> {
+                if (properties != null && properties.getValueCodec() != null) {
+                    valueCodecs.put(database, properties.getValueCodec());
+                }
+            });
+        }
+        return valueCodecs;
+    }
+
+    /**
+     * 按每个db单独的压缩配置创建压缩器
+     *
+     * @param databases key: db号，value: db配置
+     * @return key: db号，value: 压缩器，关闭压缩的db对应null
+     */
+    public static Map<Integer, RedisValueCompressor> getCompressors(Map<Integer, RedisDatabaseProperties> databases) {
+        Map<Integer, RedisValueCompressor> compressors = new LinkedHashMap<>();
+        if (databases != null) {
+            databases.forEach((database, properties) -> {
+                if (properties != null && properties.getCompression() != null) {
+                    compressors.put(database, RedisCompressionProperties.createCompressor(properties.getCompression()));
+                }
+            });
+        }
+        return compressors;
+    }
+}
@@ -2,7 +2,7 @@ package com.multiple.data.source.database.registrar;
 
 import com.multiple.data.source.constant.EnhanceRedisConstants;
 import com.multiple.data.source.database.config.DynamicRedisTemplateFactory;
-import com.multiple.data.source.database.helper.ApplicationContextHelper;
+import com.multiple.data.source.database.config.RedisShutdownCoordinator;
 import com.multiple.data.source.database.helper.DynamicRedisHelper;
 import com.multiple.data.source.database.helper.RedisHelper;
 import com.multiple.data.source.database.options.DynamicRedisTemplate;
@@ -17,17 +17,14 @@ import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionReaderUtils;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
-import org.springframework.core.env.AbstractEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.lang.NonNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -38,7 +35,7 @@ import java.util.Set;
  * RedisHelper 的 bean 名称有两个： <i>name</i> 以及 <i>nameRedisHelper</i>，可以通过名称注入
  *
  */
-public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLineRunner, ImportBeanDefinitionRegistrar {
+public class RedisMultiDataSourceRegistrar implements EnvironmentAware, ImportBeanDefinitionRegistrar {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -49,41 +46,6 @@ public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLi
         this.environment = environment;
     }
 
-    @Override
-    @SuppressWarnings("rawtypes")
-    public void run(String... args) {
-        // 获取所有数据源名称（注意：只包含spring.redis.datasource下的数据源）
-        Set<String> dataSourceNames = EnvironmentUtil.loadRedisDataSourceName((AbstractEnvironment) environment);
-
-        if (dataSourceNames.size() < 1) {
-            logger.error("no multi datasource config, register multi datasource failed. please check config.");
-            return;
-        }
-
-        // 注册默认数据源的redisHelper和redisTemplate(这两个bean在自动配置类中已经注入了)
-        RedisHelper defaultRedisHelper = ApplicationContextHelper.getContext()
-                .getBean(EnhanceRedisConstants.DefaultRedisHelperName.REDIS_HELPER, RedisHelper.class);
-        RedisTemplate defaultRedisTemplate = ApplicationContextHelper.getContext()
-                .getBean(EnhanceRedisConstants.DefaultRedisTemplateName.REDIS_TEMPLATE, RedisTemplate.class);
-        RedisDataSourceRegister.registerRedisHelper(EnhanceRedisConstants.MultiSource.DEFAULT_SOURCE_HELPER, defaultRedisHelper);
-        RedisDataSourceRegister.registerRedisTemplate(EnhanceRedisConstants.MultiSource.DEFAULT_SOURCE_TEMPLATE, defaultRedisTemplate);
-
-        // 注册多数据源的RedisHelper
-        dataSourceNames.forEach(name -> {
-            String realTemplateName = name + EnhanceRedisConstants.MultiSource.REDIS_TEMPLATE;
-            String realHelperName = name + EnhanceRedisConstants.MultiSource.REDIS_HELPER;
-            // 通过数据源名称获取bean
-            RedisTemplate redisTemplate = ApplicationContextHelper.getContext().getBean(realTemplateName, RedisTemplate.class);
-            // 如果开启动态切换db则创建动态redisHelper，反之则创建静态redisHelper
-            RedisHelper redisHelper = ApplicationContextHelper.getContext().getBean(realHelperName, RedisHelper.class);
-            // 注册RedisTemplate
-            RedisDataSourceRegister.registerRedisTemplate(realTemplateName, redisTemplate);
-            // 注册RedisHelper
-            RedisDataSourceRegister.registerRedisHelper(realHelperName, redisHelper);
-        });
-
-    }
-
     /**
      * 为每个redis数据源注入BeanDefinition
      */
@@ -91,7 +53,8 @@ public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLi
     public void registerBeanDefinitions(@NonNull AnnotationMetadata annotationMetadata,
                                         @NonNull BeanDefinitionRegistry registry) {
 
-        Set<String> names = EnvironmentUtil.loadRedisDataSourceName((AbstractEnvironment) environment);
+        // 通过Binder一次性解析所有数据源
+        Set<String> names = EnvironmentUtil.bindRedisDataSources(environment).keySet();
 
         if (names.size() <= 0) {
             logger.error("no multi datasource config, inject multi datasource failed. please check config.");
@@ -100,6 +63,9 @@ public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLi
 
         logger.info("register redis datasource: {}", names);
 
+        // 注册多数据源启动器，并行创建所有数据源
+        registerBootstrapBeanDefinition(names, registry);
+
         for (String name : names) {
             // 注册 RedisTemplate BeanDefinition
             registerRedisTemplateBeanDefinition(name, RedisTemplateFactoryBean.class, registry);
@@ -109,6 +75,17 @@ public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLi
         }
     }
 
+    /**
+     * 注册多数据源启动器 BeanDefinition
+     */
+    protected final void registerBootstrapBeanDefinition(Set<String> names, BeanDefinitionRegistry registry) {
+        BeanDefinitionBuilder builder = BeanDefinitionBuilder.genericBeanDefinition(RedisDataSourceBootstrap.class);
+        builder.addConstructorArgValue(new LinkedHashSet<>(names));
+        BeanDefinition beanDefinition = builder.getBeanDefinition();
+        beanDefinition.setPrimary(false);
+        registry.registerBeanDefinition(EnhanceRedisConstants.MultiSource.BOOTSTRAP, beanDefinition);
+    }
+
     /**
      * 注册 RedisTemplate BeanDefinition
      */
@@ -125,6 +102,7 @@ public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLi
         BeanDefinition beanDefinition = builder.getBeanDefinition();
         // 设置主要的注入的对象
         beanDefinition.setPrimary(false);
+        beanDefinition.setDependsOn(EnhanceRedisConstants.MultiSource.BOOTSTRAP);
 
         String beanName = alias + EnhanceRedisConstants.MultiSource.REDIS_TEMPLATE;
         // 设置该bean的名称（数据源名称 + RedisTemplate）和别名（数据源名称 + -template）
@@ -170,15 +148,23 @@ public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLi
             // 获取指定数据源对应的RedisTemplate
             RedisTemplate<String, String> redisTemplate = applicationContext.getBean(dataSourceName + "RedisTemplate", RedisTemplate.class);
             if (stoneRedisProperties.getDynamicDatabase()) {
-                // 为该数据源创建一个Redis连接工厂(连接到指定的数据源)
-                DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory = getDynamicRedisTemplateFactory();
+                // 复用启动器为该数据源创建的Redis连接工厂(连接到指定的数据源)
+                DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory = applicationContext
+                        .getBean(EnhanceRedisConstants.MultiSource.BOOTSTRAP, RedisDataSourceBootstrap.class)
+                        .getRedisTemplateFactory(dataSourceName);
                 DynamicRedisTemplate<String, String> dynamicRedisTemplate = new DynamicRedisTemplate<>(dynamicRedisTemplateFactory);
+                // 动态创建的redisTemplate按配置淘汰
+                StoneRedisProperties.TemplateCacheProperties templateCache = stoneRedisProperties.getTemplateCache();
+                dynamicRedisTemplate.configureRedisTemplateCache(templateCache.getMaxSize(),
+                        templateCache.getIdleTimeout(), templateCache.getDestroyDelay());
+                RedisShutdownCoordinator shutdownCoordinator = getShutdownCoordinator();
+                if (shutdownCoordinator != null) {
+                    shutdownCoordinator.register(dynamicRedisTemplate.getRedisTemplateCache());
+                }
                 // 将该数据源对应的默认RedisTemplate设置到动态dynamicRedisTemplate中
                 dynamicRedisTemplate.setDefaultRedisTemplate(redisTemplate);
-                Map<Object, RedisTemplate<String, String>> redisTemplateMap = new HashMap<>(8);
-                redisTemplateMap.put(getRedisProperties().getDatabase(), redisTemplate);
                 // 动态dynamicRedisTemplate保存多个RedisTemplate（对应该数据源的不同db）
-                dynamicRedisTemplate.setRedisTemplates(redisTemplateMap);
+                dynamicRedisTemplate.setRedisTemplate(getRedisProperties().getDatabase(), redisTemplate);
 
                 logger.info("create dynamic RedisHelper named {}", getDataSourceName());
 
@@ -211,14 +197,11 @@ public class RedisMultiDataSourceRegistrar implements EnvironmentAware,CommandLi
          */
         @Override
         public Object getObject() throws Exception {
-            // 为该数据源创建一个Redis连接工厂，连向指定的数据源
-            DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory = getDynamicRedisTemplateFactory();
-
             logger.info("Dynamic create a RedisTemplate named {}", getDataSourceName());
 
-            // 使用工厂类去创建RedisTemplate（该工厂为我们自定义的创建RedisTemplate的工厂类，使用自定义redis相关配置以及db）
-            // getRedisProperties()表示获取到该数据源对应的Redis配置
-            return dynamicRedisTemplateFactory.createRedisTemplate(getRedisProperties().getDatabase());
+            // 启动器已经并行创建好该数据源默认db的RedisTemplate（使用自定义redis相关配置以及db），这里直接获取
+            return applicationContext.getBean(EnhanceRedisConstants.MultiSource.BOOTSTRAP, RedisDataSourceBootstrap.class)
+                    .getRedisTemplate(getDataSourceName());
         }
 
         /**
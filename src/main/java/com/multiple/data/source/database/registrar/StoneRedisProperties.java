@@ -1,9 +1,16 @@
 package com.multiple.data.source.database.registrar;
 
+import com.multiple.data.source.database.config.RedisClientType;
+import com.multiple.data.source.database.convert.RedisValueCodec;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * RedisProperties
  *  redis扩展配置
@@ -20,6 +27,69 @@ public class StoneRedisProperties {
      */
     private boolean dynamicDatabase = true;
 
+    /**
+     * 是否开启单连接多db模式 默认不开启。开启后同一个数据源的所有db共享同一个连接池，通过SELECT切换db，
+     * 而不是每个db各自创建一个连接工厂和连接池（集群模式下无效）
+     */
+    private boolean singleConnection = false;
+
+    /**
+     * 动态创建的连接工厂使用的客户端（lettuce或jedis），也是多数据源没有单独配置时的默认值，
+     * 不配置则类路径下有lettuce时优先使用lettuce。容器创建的默认连接工厂仍由spring boot决定
+     */
+    private RedisClientType clientType;
+
+    /**
+     * 对象值的编解码（json、smile、avro或自定义编解码的名称），也是多数据源没有单独配置时的默认值，
+     * 只作用于RedisOperationHelper的对象方法，字符串操作不受影响
+     */
+    private String valueCodec = RedisValueCodec.JSON;
+
+    /**
+     * 值压缩配置，也是多数据源没有单独配置时的默认值，不配置则不压缩
+     */
+    private RedisCompressionProperties compression;
+
+    /**
+     * 默认数据源每个db单独的配置，key: db号
+     */
+    private Map<Integer, RedisDatabaseProperties> databases = new LinkedHashMap<>();
+
+    /**
+     * lettuce ClientResources配置，默认分组复用容器中的ClientResources，隔离分组按该配置创建
+     */
+    private ClientResourcesProperties clientResources = new ClientResourcesProperties();
+
+    /**
+     * 动态创建的每个db的RedisTemplate的缓存配置
+     */
+    private TemplateCacheProperties templateCache = new TemplateCacheProperties();
+
+    /**
+     * 优雅停机配置
+     */
+    private ShutdownProperties shutdown = new ShutdownProperties();
+
+    /**
+     * 多数据源启动配置
+     */
+    private BootstrapProperties bootstrap = new BootstrapProperties();
+
+    /**
+     * 连接预热配置
+     */
+    private WarmupProperties warmup = new WarmupProperties();
+
+    /**
+     * 连接预算配置
+     */
+    private ConnectionBudgetProperties connectionBudget = new ConnectionBudgetProperties();
+
+    /**
+     * 跨数据源、跨db分发执行配置
+     */
+    private ScatterGatherProperties scatterGather = new ScatterGatherProperties();
+
     public boolean isDynamicDatabase() {
         return dynamicDatabase;
     }
@@ -28,4 +98,153 @@ public class StoneRedisProperties {
         return dynamicDatabase;
     }
 
-}
\ No newline at end of file
+    /**
+     * lettuce ClientResources隔离分组配置
+     */
+    @Data
+    public static class ClientResourcesProperties {
+
+        /**
+         * io线程数，小于等于0则使用lettuce默认值（cpu核数）
+         */
+        private int ioThreadPoolSize;
+
+        /**
+         * 计算线程数，小于等于0则使用lettuce默认值（cpu核数）
+         */
+        private int computationThreadPoolSize;
+    }
+
+    /**
+     * 动态创建的每个db的RedisTemplate缓存配置，淘汰时会销毁其连接工厂
+     */
+    @Data
+    public static class TemplateCacheProperties {
+
+        /**
+         * 每个数据源最多缓存的RedisTemplate数量，小于等于0表示不限制
+         */
+        private int maxSize = 0;
+
+        /**
+         * 空闲多久后淘汰，不配置则不按空闲时长淘汰
+         */
+        private Duration idleTimeout;
+
+        /**
+         * 淘汰后延迟多久销毁连接工厂，给正在使用的线程留出时间
+         */
+        private Duration destroyDelay = Duration.ofSeconds(5);
+    }
+
+    /**
+     * 优雅停机配置
+     */
+    @Data
+    public static class ShutdownProperties {
+
+        /**
+         * 停机时等待正在执行的命令完成的最大时长
+         */
+        private Duration awaitTimeout = Duration.ofSeconds(10);
+
+        /**
+         * 停机时关闭所有连接工厂的最大时长
+         */
+        private Duration closeTimeout = Duration.ofSeconds(10);
+    }
+
+    /**
+     * 多数据源启动配置，所有数据源的连接工厂并行创建、校验
+     */
+    @Data
+    public static class BootstrapProperties {
+
+        /**
+         * 并行创建数据源的线程数，小于等于0表示每个数据源一个线程
+         */
+        private int parallelism = 0;
+
+        /**
+         * 所有数据源创建、校验的总超时时长，超时未完成的数据源在第一次使用时再创建
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+
+        /**
+         * 启动时是否发送PING校验数据源是否可用
+         */
+        private boolean validate = true;
+
+        /**
+         * 有数据源创建或校验失败时是否终止启动，默认只打印警告
+         */
+        private boolean failFast = false;
+    }
+
+    /**
+     * 连接预热配置，应用对外提供服务之前提前创建指定db的连接工厂并将连接池填充到min-idle
+     */
+    @Data
+    public static class WarmupProperties {
+
+        /**
+         * 要预热的数据源及其db，key: 数据源名称（default表示默认数据源），value: db列表
+         */
+        private Map<String, List<Integer>> databases = new LinkedHashMap<>();
+
+        /**
+         * 并行预热的线程数，小于等于0表示每个db一个线程
+         */
+        private int parallelism = 0;
+
+        /**
+         * 预热的总超时时长
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+
+        /**
+         * 预热失败时是否终止启动，默认只打印警告
+         */
+        private boolean failFast = false;
+    }
+
+    /**
+     * 连接预算配置，限制所有数据源、所有db的连接池加起来的总连接数
+     */
+    @Data
+    public static class ConnectionBudgetProperties {
+
+        /**
+         * 总连接数上限，小于等于0表示不限制
+         */
+        private int maxTotal = 0;
+
+        /**
+         * 数据源权重，按权重分配总连接数，key: 数据源名称（default表示默认数据源），没有配置的数据源权重为1
+         */
+        private Map<String, Integer> weights = new LinkedHashMap<>();
+
+        /**
+         * 预算不足时的最大等待时长，不配置则立即失败
+         */
+        private Duration maxWait;
+    }
+
+    /**
+     * 跨数据源、跨db分发执行配置
+     */
+    @Data
+    public static class ScatterGatherProperties {
+
+        /**
+         * 并行执行的线程数，小于等于0表示cpu核数的两倍
+         */
+        private int parallelism = 0;
+
+        /**
+         * 每个目标的默认超时时长，从目标开始执行时计算
+         */
+        private Duration timeout = Duration.ofSeconds(10);
+    }
+
+}
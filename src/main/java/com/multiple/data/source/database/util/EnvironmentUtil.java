@@ -1,14 +1,14 @@
 package com.multiple.data.source.database.util;
 
-import org.springframework.core.env.AbstractEnvironment;
-import org.springframework.core.env.EnumerablePropertySource;
-import org.springframework.core.env.MutablePropertySources;
+import com.multiple.data.source.database.registrar.MultiRedisProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
 
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * 环境工具类
@@ -16,24 +16,30 @@ import java.util.stream.StreamSupport;
  */
 public class EnvironmentUtil {
 
+    /**
+     * 多数据源配置前缀
+     */
+    private static final String DATASOURCE_PREFIX = "spring.redis.datasource";
+
     /**
      * 从环境信息Environment中解析出数据源的名称
      *
      * @return 数据源名称
      */
-    public static Set<String> loadRedisDataSourceName(AbstractEnvironment environment) {
-        MutablePropertySources propertySources = environment.getPropertySources();
-        Set<String> configs = StreamSupport.stream(propertySources.spliterator(), false)
-                .filter(ps -> ps instanceof EnumerablePropertySource)
-                .map(ps -> ((EnumerablePropertySource) ps).getPropertyNames())
-                .flatMap(Arrays::stream)
-                .filter(propName -> propName.startsWith("spring.redis.datasource."))
-                .collect(Collectors.toSet());
-
-        if (configs.size() > 0) {
-            return configs.stream().map(item -> item.split("\\.")[3]).collect(Collectors.toSet());
-        }
+    public static Set<String> loadRedisDataSourceName(Environment environment) {
+        return bindRedisDataSources(environment).keySet();
+    }
 
-        return Collections.emptySet();
+    /**
+     * 通过Binder一次性绑定 <code>spring.redis.datasource.[name]</code> 下的所有数据源配置，
+     * 不再逐个遍历所有配置源的所有属性名
+     *
+     * @return key: 数据源名称，value: 数据源对应的Redis配置
+     */
+    public static Map<String, MultiRedisProperties> bindRedisDataSources(Environment environment) {
+        Map<String, MultiRedisProperties> dataSources = Binder.get(environment)
+                .bind(DATASOURCE_PREFIX, Bindable.mapOf(String.class, MultiRedisProperties.class))
+                .orElse(Collections.emptyMap());
+        return new LinkedHashMap<>(dataSources);
     }
-}
\ No newline at end of file
+}